@@ -0,0 +1,66 @@
+package de.raimannma.reinforce4j;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DQNBenchmark {
+    @Param({"27", "256"})
+    public int numStates;
+    @Param({"100", "512"})
+    public int numHiddenUnits;
+    @Param({"5"})
+    public int numActions;
+    @Param({"10", "50"})
+    public int learningStepsPerIteration;
+    @Param({"1", "10"})
+    public int batchSize;
+
+    private DQN agent;
+    private double[][] states;
+    private int step;
+
+    @Setup
+    public void setup() {
+        final Map<Option, Double> config = new EnumMap<>(Option.class);
+        config.put(Option.NUM_HIDDEN_UNITS, (double) this.numHiddenUnits);
+        config.put(Option.EXPERIENCE_SIZE, 10000.0);
+        config.put(Option.EXPERIENCE_ADD_EVERY, 1.0);
+        config.put(Option.LEARNING_STEPS_PER_ITERATION, (double) this.learningStepsPerIteration);
+        config.put(Option.BATCH_SIZE, (double) this.batchSize);
+        this.agent = new DQN(this.numActions, this.numStates, config);
+
+        final SplittableRandom rand = new SplittableRandom(42);
+        this.states = new double[64][this.numStates];
+        for (final double[] state : this.states) {
+            for (int i = 0; i < state.length; i++) {
+                state[i] = rand.nextDouble();
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            this.actLearn();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.agent.shutdown();
+    }
+
+    @Benchmark
+    public int actLearn() {
+        this.step++;
+        final int action = this.agent.act(this.states[this.step & 63]);
+        this.agent.learn(action == (this.step % this.numActions) ? 1 : -0.1);
+        return action;
+    }
+}
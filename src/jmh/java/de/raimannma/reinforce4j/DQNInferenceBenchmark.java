@@ -0,0 +1,70 @@
+package de.raimannma.reinforce4j;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DQNInferenceBenchmark {
+    @Param({"27", "256"})
+    public int numStates;
+    @Param({"100", "512"})
+    public int numHiddenUnits;
+    @Param({"5"})
+    public int numActions;
+
+    private DQN agent;
+    private Policy policy;
+    private QuantizedPolicy quantizedPolicy;
+    private double[][] states;
+    private int step;
+
+    @Setup
+    public void setup() {
+        final Map<Option, Double> config = new EnumMap<>(Option.class);
+        config.put(Option.NUM_HIDDEN_UNITS, (double) this.numHiddenUnits);
+        config.put(Option.EPSILON, 0.0);
+        this.agent = new DQN(this.numActions, this.numStates, config);
+        this.policy = this.agent.toPolicy();
+        this.quantizedPolicy = this.agent.toQuantizedPolicy();
+
+        final SplittableRandom rand = new SplittableRandom(42);
+        this.states = new double[64][this.numStates];
+        for (final double[] state : this.states) {
+            for (int i = 0; i < state.length; i++) {
+                state[i] = rand.nextDouble();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.agent.shutdown();
+    }
+
+    @Benchmark
+    public int act() {
+        this.step++;
+        return this.agent.act(this.states[this.step & 63]);
+    }
+
+    @Benchmark
+    public int policyAct() {
+        this.step++;
+        return this.policy.act(this.states[this.step & 63]);
+    }
+
+    @Benchmark
+    public int quantizedPolicyAct() {
+        this.step++;
+        return this.quantizedPolicy.act(this.states[this.step & 63]);
+    }
+}
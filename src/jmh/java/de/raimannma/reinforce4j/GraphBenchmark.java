@@ -0,0 +1,122 @@
+package de.raimannma.reinforce4j;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+    @Param({"27", "256"})
+    public int numStates;
+    @Param({"100", "512", "1024"})
+    public int numHiddenUnits;
+    @Param({"1", "32"})
+    public int cols;
+    @Param({"false", "true"})
+    public boolean floatPrecision;
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Parallel parallel;
+    private Graph graph;
+    private Mat weights;
+    private Mat bias;
+    private Mat input;
+    private Mat hidden;
+    private Mat hiddenBiased;
+    private Mat activated;
+
+    @Setup
+    public void setup() {
+        this.parallel = this.parallelism > 1 ? new Parallel(this.parallelism, 65536) : Parallel.SEQUENTIAL;
+        this.graph = new Graph(false, this.parallel);
+        final SplittableRandom random = new SplittableRandom(42);
+        this.weights = DQN.createRandMat(this.numHiddenUnits, this.numStates, this.floatPrecision, 0.01, random);
+        this.bias = DQN.createRandMat(this.numHiddenUnits, 1, this.floatPrecision, 0.01, random);
+        this.input = DQN.createRandMat(this.numStates, this.cols, this.floatPrecision, 0.01, random);
+        this.hidden = new Mat(this.numHiddenUnits, this.cols, this.floatPrecision);
+        this.hiddenBiased = new Mat(this.numHiddenUnits, this.cols, this.floatPrecision);
+        this.activated = new Mat(this.numHiddenUnits, this.cols, this.floatPrecision);
+        this.graph.mul(this.weights, this.input, this.hidden);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.parallel.shutdown();
+    }
+
+    @Benchmark
+    public Mat mulForward() {
+        this.graph.reset(false);
+        return this.graph.mul(this.weights, this.input, this.hidden);
+    }
+
+    @Benchmark
+    public Mat mulBackward() {
+        this.graph.reset(true);
+        this.graph.mul(this.weights, this.input, this.hidden);
+        GraphBenchmark.fillGrad(this.hidden);
+        this.graph.backward();
+        return this.weights;
+    }
+
+    @Benchmark
+    public Mat addForward() {
+        this.graph.reset(false);
+        return this.graph.add(this.hidden, this.bias, this.hiddenBiased);
+    }
+
+    @Benchmark
+    public Mat addBackward() {
+        this.graph.reset(true);
+        this.graph.add(this.hidden, this.bias, this.hiddenBiased);
+        GraphBenchmark.fillGrad(this.hiddenBiased);
+        this.graph.backward();
+        return this.bias;
+    }
+
+    @Benchmark
+    public Mat tanhForward() {
+        this.graph.reset(false);
+        return this.graph.tanh(this.hidden, this.activated);
+    }
+
+    @Benchmark
+    public Mat tanhBackward() {
+        this.graph.reset(true);
+        this.graph.tanh(this.hidden, this.activated);
+        GraphBenchmark.fillGrad(this.activated);
+        this.graph.backward();
+        return this.hidden;
+    }
+
+    @Benchmark
+    public Mat reluForward() {
+        this.graph.reset(false);
+        return this.graph.relu(this.hidden, this.activated);
+    }
+
+    @Benchmark
+    public Mat reluBackward() {
+        this.graph.reset(true);
+        this.graph.relu(this.hidden, this.activated);
+        GraphBenchmark.fillGrad(this.activated);
+        this.graph.backward();
+        return this.hidden;
+    }
+
+    private static void fillGrad(final Mat mat) {
+        if (mat.isFloat()) {
+            Arrays.fill(mat.fdw, 1);
+        } else {
+            Arrays.fill(mat.dw, 1);
+        }
+    }
+}
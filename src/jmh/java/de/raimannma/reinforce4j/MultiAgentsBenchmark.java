@@ -0,0 +1,70 @@
+package de.raimannma.reinforce4j;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiAgentsBenchmark {
+    @Param({"1", "8", "32"})
+    public int numAgents;
+    @Param({"27"})
+    public int numStates;
+    @Param({"100"})
+    public int numHiddenUnits;
+    @Param({"5"})
+    public int numActions;
+
+    private MultiAgents agents;
+    private double[][] states;
+    private double[] rewards;
+
+    @Setup
+    public void setup() {
+        final Map<Option, Double> config = new EnumMap<>(Option.class);
+        config.put(Option.NUM_HIDDEN_UNITS, (double) this.numHiddenUnits);
+        config.put(Option.EXPERIENCE_SIZE, 10000.0);
+        config.put(Option.LEARNING_STEPS_PER_ITERATION, 10.0);
+        this.agents = new MultiAgents(this.numAgents, this.numActions, this.numStates, config);
+
+        final SplittableRandom rand = new SplittableRandom(42);
+        this.states = new double[this.numAgents][this.numStates];
+        for (final double[] state : this.states) {
+            for (int i = 0; i < state.length; i++) {
+                state[i] = rand.nextDouble();
+            }
+        }
+        this.rewards = new double[this.numAgents];
+        for (int i = 0; i < 100; i++) {
+            this.actLearn();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.agents.shutdown();
+    }
+
+    @Benchmark
+    public int[] act() {
+        return this.agents.act(this.states);
+    }
+
+    @Benchmark
+    public int[] actLearn() {
+        final int[] actions = this.agents.act(this.states);
+        for (int i = 0; i < actions.length; i++) {
+            this.rewards[i] = actions[i] == 0 ? 1 : -0.1;
+        }
+        this.agents.learn(this.rewards);
+        return actions;
+    }
+}
@@ -0,0 +1,5 @@
+package de.raimannma.reinforce4j;
+
+enum Activation {
+    TANH, RELU, LEAKY_RELU
+}
@@ -0,0 +1,120 @@
+package de.raimannma.reinforce4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+final class Checkpoint {
+    private static final int MAGIC = 0x4D4A3452;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int ACTIVATION_SIZE = 16;
+
+    private Checkpoint() {
+    }
+
+    static void write(final File file, final Network net) throws IOException {
+        final Mat[] mats = net.toArray();
+        final boolean floatPrecision = net.isFloat();
+        final ByteBuffer header = ByteBuffer.allocate(Checkpoint.HEADER_SIZE + Checkpoint.ACTIVATION_SIZE + 8 * mats.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(Checkpoint.MAGIC).putInt(Checkpoint.VERSION).putInt(mats.length).putInt(floatPrecision ? 1 : 0);
+        header.putInt(net.activation.ordinal()).putInt(0).putDouble(Graph.LEAKY_SLOPE);
+        for (final Mat mat : mats) {
+            header.putInt(mat.n).putInt(mat.d);
+        }
+        header.flip();
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Checkpoint.writeFully(channel, header);
+            for (final Mat mat : mats) {
+                final Mat stored = mat.toPrecision(floatPrecision);
+                final ByteBuffer data = ByteBuffer.allocate((floatPrecision ? 4 : 8) * stored.size()).order(ByteOrder.LITTLE_ENDIAN);
+                if (floatPrecision) {
+                    data.asFloatBuffer().put(stored.fw);
+                } else {
+                    data.asDoubleBuffer().put(stored.w);
+                }
+                Checkpoint.writeFully(channel, data);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static Network read(final File file, final Activation defaultActivation) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < Checkpoint.HEADER_SIZE || buffer.getInt() != Checkpoint.MAGIC) {
+                throw new IOException("Not a reinforce4j checkpoint: " + file);
+            }
+            final int version = buffer.getInt();
+            if (version < 1 || version > Checkpoint.VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+            }
+            final int count = buffer.getInt();
+            final boolean floatPrecision = buffer.getInt() == 1;
+            final int activationSize = version == 1 ? 0 : Checkpoint.ACTIVATION_SIZE;
+            if (count <= 0 || count % 2 != 0 || buffer.remaining() < activationSize + 8L * count) {
+                throw new IOException("Corrupt checkpoint header: " + file);
+            }
+            final Activation activation;
+            if (version == 1) {
+                activation = defaultActivation;
+            } else {
+                final int ordinal = buffer.getInt();
+                buffer.getInt();
+                activation = Checkpoint.toActivation(ordinal, buffer.getDouble(), file.toString());
+            }
+
+            final int[] rows = new int[count];
+            final int[] cols = new int[count];
+            long dataSize = 0;
+            for (int i = 0; i < count; i++) {
+                rows[i] = buffer.getInt();
+                cols[i] = buffer.getInt();
+                if (rows[i] <= 0 || cols[i] <= 0) {
+                    throw new IOException("Corrupt checkpoint header: " + file);
+                }
+                dataSize += (floatPrecision ? 4L : 8L) * rows[i] * cols[i];
+            }
+            if (dataSize != buffer.remaining()) {
+                throw new IOException("Checkpoint size " + channel.size() + " does not match its header: " + file);
+            }
+            final Mat[] mats = new Mat[count];
+            for (int i = 0; i < count; i++) {
+                mats[i] = new Mat(rows[i], cols[i], floatPrecision);
+            }
+            for (final Mat mat : mats) {
+                if (floatPrecision) {
+                    buffer.asFloatBuffer().get(mat.fw);
+                    buffer.position(buffer.position() + 4 * mat.size());
+                } else {
+                    buffer.asDoubleBuffer().get(mat.w);
+                    buffer.position(buffer.position() + 8 * mat.size());
+                }
+            }
+            return Network.fromArray(mats, activation);
+        }
+    }
+
+    static Activation toActivation(final int ordinal, final double leakySlope, final String source) throws IOException {
+        if (ordinal < 0 || ordinal >= Activation.values().length) {
+            throw new IOException("Unknown activation " + ordinal + ": " + source);
+        }
+        final Activation activation = Activation.values()[ordinal];
+        if (activation == Activation.LEAKY_RELU && leakySlope != Graph.LEAKY_SLOPE) {
+            throw new IOException("Leaky slope " + leakySlope + " != " + Graph.LEAKY_SLOPE + ": " + source);
+        }
+        return activation;
+    }
+}
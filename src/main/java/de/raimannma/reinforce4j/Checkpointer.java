@@ -0,0 +1,128 @@
+package de.raimannma.reinforce4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class Checkpointer {
+    private static final String SUFFIX = ".bin";
+
+    private final String prefix;
+    private final int keep;
+    private final ExecutorService executor;
+    private File directory;
+    private Network pendingNet;
+    private long pendingStep;
+    private boolean scheduled;
+
+    Checkpointer(final File directory, final String prefix, final int keep) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.keep = Math.max(1, keep);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "reinforce4j-checkpoint-" + prefix);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    synchronized void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    synchronized void submit(final Network net, final long step) {
+        this.pendingNet = net;
+        this.pendingStep = step;
+        if (!this.scheduled) {
+            this.scheduled = true;
+            this.executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final Network net;
+            final long step;
+            final File directory;
+            synchronized (this) {
+                if (this.pendingNet == null) {
+                    this.scheduled = false;
+                    return;
+                }
+                net = this.pendingNet;
+                step = this.pendingStep;
+                directory = this.directory;
+                this.pendingNet = null;
+            }
+            try {
+                this.write(directory, net, step);
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void write(final File directory, final Network net, final long step) throws IOException {
+        Files.createDirectories(directory.toPath());
+        final File target = new File(directory, this.prefix + "-" + step + Checkpointer.SUFFIX);
+        final File temp = new File(directory, target.getName() + ".tmp");
+        Checkpoint.write(temp, net);
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        final File[] checkpoints = this.list(directory);
+        for (int i = this.keep; i < checkpoints.length; i++) {
+            Files.deleteIfExists(checkpoints[i].toPath());
+        }
+    }
+
+    File latest() {
+        final File directory;
+        synchronized (this) {
+            directory = this.directory;
+        }
+        return Checkpointer.latest(directory, this.prefix);
+    }
+
+    static File latest(final File directory, final String prefix) {
+        final File[] checkpoints = Checkpointer.list(directory, prefix);
+        return checkpoints.length == 0 ? null : checkpoints[0];
+    }
+
+    private File[] list(final File directory) {
+        return Checkpointer.list(directory, this.prefix);
+    }
+
+    private static File[] list(final File directory, final String prefix) {
+        final File[] files = directory.listFiles((dir, name) -> Checkpointer.step(name, prefix) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingLong((File file) -> Checkpointer.step(file.getName(), prefix)).reversed());
+        return files;
+    }
+
+    long step(final File file) {
+        return Checkpointer.step(file.getName(), this.prefix);
+    }
+
+    private static long step(final String name, final String prefix) {
+        final int start = prefix.length() + 1;
+        if (!name.startsWith(prefix) || name.length() <= start || name.charAt(start - 1) != '-' || !name.endsWith(Checkpointer.SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(start, name.length() - Checkpointer.SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    void shutdown() {
+        this.executor.shutdown();
+    }
+}
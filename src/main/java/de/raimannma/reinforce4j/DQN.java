@@ -7,11 +7,8 @@ import net.jafama.FastMath;
 import java.io.*;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
 import java.util.SplittableRandom;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class DQN {
     final int numStates;
@@ -20,24 +17,56 @@ public class DQN {
     private final int expAddEvery;
     private final int expSize;
     private final int learningStepsPerIteration;
+    private final int batchSize;
     private final double tdErrorClamp;
-    private final double alpha;
+    private final Optimizer optimizer;
     private final double epsilon;
-    private final Experience[] exp;
+    private final boolean floatPrecision;
+    private final ReplayBuffer replay;
+    private final ReplayBuffer pending;
+    private final ReplayBuffer offline;
+    private final boolean floatExperience;
+    private final int sparseCapacity;
+    private final Experience replayView;
+    private final Experience pendingView;
     private final int agentIndex;
-    private final SplittableRandom rand = new SplittableRandom();
-    Mat W1;
-    Mat B1;
-    Mat W2;
-    Mat B2;
-    private int expIndex;
+    private final GradientReducer reducer;
+    private final SplittableRandom rand;
+    private final SplittableRandom exploration;
+    private final int[] batch;
+    private final double[] batchTargets;
+    private final double[] scratchState;
+    private final double[] scratchNextState;
+    private final TransitionQueue queue;
+    private final Experience queueView;
+    private final int snapshotInterval;
+    private final Thread learner;
+    private final Object modelLock = new Object();
+    private final int targetUpdateInterval;
+    private final double targetSoftUpdate;
+    private final TargetCache targetCache;
+    private final Parallel parallel;
+    private final boolean ownsParallel;
+    final Metrics metrics;
+    private final int saveInterval;
+    Network net;
     private int t;
     private double lastReward;
-    private Mat lastState;
-    private Mat currentState;
+    private boolean lastTerminal;
+    private double[] lastState;
+    private double[] currentState;
+    private SparseVector lastSparse;
+    private SparseVector currentSparse;
     private int lastAction;
     private int currentAction;
-    private Graph graph;
+    private Workspace workspace;
+    private Workspace batchWorkspace;
+    private Workspace actWorkspace;
+    private volatile Network snapshot;
+    private Network target;
+    private long updates;
+    private TransitionLog log;
+    private Checkpointer checkpointer;
     private boolean isFirstRun;
 
     DQN(final int numActions, final int numStates, final Map<Option, Double> config) {
@@ -45,124 +74,607 @@ public class DQN {
     }
 
     public DQN(final int numActions, final int numStates, final Map<Option, Double> config, final int agentIndex, final Mat[] nets) {
+        this(numActions, numStates, config, agentIndex, nets == null ? null : Network.fromArray(nets, DQN.toActivation(config)), null, null,
+                DQN.createRandom(config, agentIndex));
+    }
+
+    DQN(final int numActions, final int numStates, final Map<Option, Double> config, final int agentIndex, final Network shared, final GradientReducer reducer, final Parallel parallel,
+        final SplittableRandom random) {
         this.numActions = numActions;
         this.numStates = numStates;
         this.agentIndex = agentIndex;
+        this.reducer = reducer;
+        this.rand = random.split();
+        this.exploration = random.split();
+        this.ownsParallel = parallel == null;
+        this.parallel = this.ownsParallel ? Parallel.create(config) : parallel;
 
         this.gamma = config.getOrDefault(Option.GAMMA, 0.3);
         this.epsilon = config.getOrDefault(Option.EPSILON, 0.1);
-        this.alpha = config.getOrDefault(Option.ALPHA, 0.05);
-
-        this.expAddEvery = DQN.toInteger(config.getOrDefault(Option.EXPERIENCE_ADD_EVERY, 25.0));
+        final Optimizer.Type optimizerType = Optimizer.toType(config.getOrDefault(Option.OPTIMIZER, 0.0));
+        this.optimizer = new Optimizer(optimizerType,
+                config.getOrDefault(Option.ALPHA, 0.05),
+                config.getOrDefault(Option.MOMENTUM, 0.9),
+                config.getOrDefault(Option.DECAY_RATE, optimizerType == Optimizer.Type.RMSPROP ? 0.99 : 0.999),
+                config.getOrDefault(Option.GRADIENT_CLIP, 0.0));
+
+        this.expAddEvery = FastMath.max(1, DQN.toInteger(config.getOrDefault(Option.EXPERIENCE_ADD_EVERY, 25.0)));
         this.expSize = DQN.toInteger(config.getOrDefault(Option.EXPERIENCE_SIZE, 5000.0));
         this.learningStepsPerIteration = DQN.toInteger(config.getOrDefault(Option.LEARNING_STEPS_PER_ITERATION, 10.0));
         this.tdErrorClamp = config.getOrDefault(Option.TD_ERROR_CLAMP, 1.0);
-        final int numHiddenUnits = DQN.toInteger(config.getOrDefault(Option.NUM_HIDDEN_UNITS, 100.0));
-
-        if (nets == null) {
-            this.W1 = DQN.createRandMat(numHiddenUnits, this.numStates);
-            this.W2 = DQN.createRandMat(this.numActions, numHiddenUnits);
-            this.B1 = new Mat(numHiddenUnits, 1);
-            this.B2 = new Mat(this.numActions, 1);
+        this.batchSize = FastMath.max(1, DQN.toInteger(config.getOrDefault(Option.BATCH_SIZE, 1.0)));
+        this.floatPrecision = config.getOrDefault(Option.FLOAT_PRECISION, 0.0) != 0;
+        this.sparseCapacity = DQN.toInteger(config.getOrDefault(Option.SPARSE_CAPACITY, 0.0));
+        if (shared == null) {
+            this.net = Network.create(DQN.layerSizes(this.numStates, this.numActions, config), DQN.toActivation(config), this.floatPrecision, random.split())
+                    .prepare(this.optimizer);
         } else {
-            this.W1 = nets[0];
-            this.W2 = nets[1];
-            this.B1 = nets[2];
-            this.B2 = nets[3];
+            this.net = shared.toPrecision(this.floatPrecision).prepare(this.optimizer).share();
         }
 
-        this.exp = new Experience[this.expSize];
-        this.expIndex = 0;
+        this.workspace = this.createWorkspace(1);
+        this.batchWorkspace = this.createWorkspace(this.batchSize);
+        this.batch = new int[this.batchSize];
+        this.batchTargets = new double[this.batchSize];
+
+        this.floatExperience = this.floatPrecision || config.getOrDefault(Option.EXPERIENCE_FLOAT_PRECISION, 0.0) != 0;
+        final double priorityAlpha = config.getOrDefault(Option.PRIORITY_ALPHA, 0.0);
+        final double priorityBeta = config.getOrDefault(Option.PRIORITY_BETA, 0.4);
+        this.replay = new ReplayBuffer(this.expSize, this.numStates, this.floatExperience, this.sparseCapacity, priorityAlpha, priorityBeta);
+        this.replayView = new Experience(this.replay);
+        this.metrics = new Metrics(config.getOrDefault(Option.METRICS, 0.0) != 0, this.replay);
+        this.pending = new ReplayBuffer(1, this.numStates, false, this.sparseCapacity);
+        this.pendingView = new Experience(this.pending);
+        this.offline = new ReplayBuffer(this.batchSize, this.numStates, false, this.sparseCapacity);
+        this.scratchState = new double[this.numStates];
+        this.scratchNextState = new double[this.numStates];
 
         this.t = 0;
 
         this.lastReward = 0;
-        this.lastState = null;
-        this.currentState = null;
+        this.lastTerminal = false;
+        this.lastState = new double[this.numStates];
+        this.currentState = new double[this.numStates];
+        if (this.sparseCapacity > 0) {
+            this.lastSparse = new SparseVector(this.sparseCapacity);
+            this.currentSparse = new SparseVector(this.sparseCapacity);
+        }
         this.lastAction = 0;
         this.currentAction = 0;
         this.isFirstRun = true;
+
+        this.targetUpdateInterval = DQN.toInteger(config.getOrDefault(Option.TARGET_UPDATE_INTERVAL, 0.0));
+        this.targetSoftUpdate = config.getOrDefault(Option.TARGET_SOFT_UPDATE, 0.0);
+        if (this.targetUpdateInterval > 0 || this.targetSoftUpdate > 0) {
+            this.target = this.net.copy();
+        }
+        this.targetCache = this.target != null && this.targetSoftUpdate <= 0 && config.getOrDefault(Option.TARGET_CACHE, 0.0) != 0 ?
+                new TargetCache(this.expSize) :
+                null;
+        this.updates = 0;
+
+        this.saveInterval = DQN.toInteger(config.getOrDefault(Option.SAVE_INTERVAL, 0.0));
+        if (this.saveInterval > 0) {
+            this.checkpointer = new Checkpointer(new File("checkpoints"), "agent-" + agentIndex, DQN.toInteger(config.getOrDefault(Option.CHECKPOINT_KEEP, 3.0)));
+        }
+
+        this.snapshotInterval = FastMath.max(1, DQN.toInteger(config.getOrDefault(Option.SNAPSHOT_INTERVAL, 10.0)));
+        if (config.getOrDefault(Option.ASYNC_LEARNING, 0.0) != 0) {
+            this.queue = new TransitionQueue(DQN.toInteger(config.getOrDefault(Option.ASYNC_QUEUE_SIZE, 1024.0)), this.numStates, this.sparseCapacity);
+            this.queueView = this.queue.view();
+            this.actWorkspace = this.createWorkspace(1);
+            this.publishSnapshot();
+            this.learner = new Thread(this::runLearner, "reinforce4j-learner-" + agentIndex);
+            this.learner.setDaemon(true);
+            this.learner.start();
+        } else {
+            this.queue = null;
+            this.queueView = null;
+            this.actWorkspace = this.workspace;
+            this.learner = null;
+        }
     }
 
     static int toInteger(final Double val) {
         return (int) FastMath.round(val);
     }
 
-    static Mat createRandMat(final int n, final int d) {
+    static SplittableRandom createRandom(final Map<Option, Double> config) {
+        final Double seed = config.get(Option.SEED);
+        return seed == null ? new SplittableRandom() : new SplittableRandom(seed.longValue());
+    }
+
+    private static SplittableRandom createRandom(final Map<Option, Double> config, final int agentIndex) {
+        final SplittableRandom root = DQN.createRandom(config);
+        root.split();
+        for (int i = 0; i < agentIndex; i++) {
+            root.split();
+        }
+        return root.split();
+    }
+
+    static Activation toActivation(final Map<Option, Double> config) {
+        return Activation.values()[DQN.toInteger(config.getOrDefault(Option.ACTIVATION, 0.0))];
+    }
+
+    static int[] layerSizes(final int numStates, final int numActions, final Map<Option, Double> config) {
+        final int[] hiddenUnits = new int[FastMath.max(1, DQN.toInteger(config.getOrDefault(Option.NUM_HIDDEN_LAYERS, 1.0)))];
+        Arrays.fill(hiddenUnits, DQN.toInteger(config.getOrDefault(Option.NUM_HIDDEN_UNITS, 100.0)));
+        return DQN.layerSizes(numStates, numActions, hiddenUnits);
+    }
+
+    static int[] layerSizes(final int numStates, final int numActions, final int[] hiddenUnits) {
+        final int[] sizes = new int[hiddenUnits.length + 2];
+        sizes[0] = numStates;
+        System.arraycopy(hiddenUnits, 0, sizes, 1, hiddenUnits.length);
+        sizes[sizes.length - 1] = numActions;
+        return sizes;
+    }
+
+    static Mat createRandMat(final int n, final int d, final boolean floatPrecision, final double std, final SplittableRandom random) {
         final Mat mat = new Mat(n, d);
-        Arrays.parallelSetAll(mat.w, i -> ThreadLocalRandom.current().nextGaussian() / 100);
-        return mat;
+        Arrays.setAll(mat.w, i -> DQN.nextGaussian(random) * std);
+        return mat.toPrecision(floatPrecision);
+    }
+
+    static double nextGaussian(final SplittableRandom random) {
+        double x;
+        double y;
+        double s;
+        do {
+            x = 2 * random.nextDouble() - 1;
+            y = 2 * random.nextDouble() - 1;
+            s = x * x + y * y;
+        } while (s >= 1 || s == 0);
+        return x * FastMath.sqrt(-2 * FastMath.log(s) / s);
+    }
+
+    private Workspace createWorkspace(final int cols) {
+        return new Workspace(this.net.getSizes(), cols, this.floatPrecision, this.sparseCapacity, this.parallel);
     }
 
     public int act(final double[] stateArr) {
-        final Mat state = new Mat(this.numStates, 1, stateArr);
+        this.observe(stateArr);
+        return this.act();
+    }
 
-        final int action = FastMath.random() < this.epsilon ?
-                ThreadLocalRandom.current().nextInt(this.numActions) :
-                DQN.maxIndex(this.calcQ(state, false).w);
-        this.lastState = this.currentState;
-        this.lastAction = this.currentAction;
-        this.currentState = state;
+    public int act(final SparseVector state) {
+        this.observe(state);
+        return this.act();
+    }
+
+    int act() {
+        final long start = this.metrics.start();
+        final long allocated = this.metrics.allocated();
+        final int action;
+        if (this.exploration.nextDouble() < this.epsilon) {
+            action = this.exploration.nextInt(this.numActions);
+        } else {
+            this.copyCurrentState(this.actWorkspace, 0);
+            action = this.greedyAction();
+        }
         this.currentAction = action;
+        this.metrics.record(Stage.ACT, start);
+        this.metrics.recordAllocation(allocated);
         return action;
     }
 
-    private static int maxIndex(final double[] arr) {
-        int maxIndex = 0;
-        double maxVal = arr[0];
-        for (int i = 1; i < arr.length; i++) {
-            if (arr[i] > maxVal) {
-                maxIndex = i;
-                maxVal = arr[i];
-            }
+    private int greedyAction() {
+        if (this.learner == null) {
+            return this.calcQ(this.actWorkspace, false).argmax(0);
         }
-        return maxIndex;
+        return this.snapshot.forward(this.actWorkspace, false).argmax(0);
+    }
+
+    int act(final int greedyAction) {
+        this.currentAction = this.exploration.nextDouble() < this.epsilon ?
+                this.exploration.nextInt(this.numActions) :
+                greedyAction;
+        return this.currentAction;
     }
 
-    private Mat calcQ(final Mat state, final boolean needsBackprop) {
-        this.graph = new Graph(needsBackprop);
-        return this.graph.add(this.graph.mul(this.W2, this.graph.tanh(this.graph.add(this.graph.mul(this.W1, state), this.B1))), this.B2);
+    void observe(final double[] stateArr) {
+        this.swapStates();
+        if (this.currentSparse != null) {
+            this.currentSparse.set(stateArr);
+        } else {
+            System.arraycopy(stateArr, 0, this.currentState, 0, this.numStates);
+        }
+    }
+
+    void observe(final SparseVector state) {
+        this.swapStates();
+        if (this.currentSparse != null) {
+            this.currentSparse.set(state);
+        } else {
+            state.toDense(this.currentState);
+        }
+    }
+
+    void copyCurrentState(final Workspace ws, final int col) {
+        if (this.currentSparse != null) {
+            ws.setColumn(col, this.currentSparse);
+        } else {
+            ws.setColumn(col, this.currentState);
+        }
+    }
+
+    private void swapStates() {
+        final double[] previousState = this.lastState;
+        this.lastState = this.currentState;
+        this.currentState = previousState;
+        final SparseVector previousSparse = this.lastSparse;
+        this.lastSparse = this.currentSparse;
+        this.currentSparse = previousSparse;
+        this.lastAction = this.currentAction;
+    }
+
+    private Mat calcQ(final Workspace ws, final boolean needsBackprop) {
+        return this.net.forward(ws, needsBackprop);
+    }
+
+    private Mat calcTargetQ(final Workspace ws) {
+        if (this.target == null) {
+            return this.calcQ(ws, false);
+        }
+        return this.target.forward(ws, false);
     }
 
     public void learn(final double reward) {
+        this.learn(reward, false);
+    }
+
+    public void learn(final double reward, final boolean terminal) {
         if (this.isFirstRun) {
             this.isFirstRun = false;
             this.lastReward = reward;
+            this.lastTerminal = terminal;
             return;
         }
 
-        final Experience exp = new Experience(this.lastState, this.lastAction, this.lastReward, this.currentState);
-        this.learnFromTuple(exp);
-        this.exp[this.expIndex] = exp;
-        this.expIndex++;
-        if (this.expIndex > this.expSize) {
-            this.expIndex = 0;
+        this.metrics.step();
+        if (this.log != null) {
+            this.logTransition();
+        }
+        final boolean sparse = this.lastSparse != null;
+        if (this.queue != null) {
+            final boolean offered = sparse ?
+                    this.queue.offer(this.lastSparse, this.lastAction, this.lastReward, this.currentSparse, this.lastTerminal) :
+                    this.queue.offer(this.lastState, this.lastAction, this.lastReward, this.currentState, this.lastTerminal);
+            if (!offered) {
+                this.metrics.drop();
+            }
+        } else {
+            if (sparse) {
+                this.pending.add(this.lastSparse, this.lastAction, this.lastReward, this.currentSparse, this.lastTerminal);
+            } else {
+                this.pending.add(this.lastState, this.lastAction, this.lastReward, this.currentState, this.lastTerminal);
+            }
+            this.train(this.pendingView.at(0));
+        }
+        this.lastReward = reward;
+        this.lastTerminal = terminal;
+    }
+
+    private void logTransition() {
+        final double[] state = this.lastState;
+        final double[] nextState = this.currentState;
+        if (this.lastSparse != null) {
+            this.lastSparse.toDense(state);
+            this.currentSparse.toDense(nextState);
+        }
+        try {
+            this.log.add(state, this.lastAction, this.lastReward, nextState, this.lastTerminal);
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void train(final Experience fresh) {
+        final long start = this.metrics.start();
+        final long allocated = this.metrics.allocated();
+        this.learnFromTuple(fresh, null);
+        if (this.t % this.expAddEvery == 0) {
+            final int slot = fresh.copyTo(this.replay);
+            if (this.targetCache != null) {
+                this.targetCache.invalidate(slot);
+            }
         }
         this.t++;
+        final Checkpointer checkpointer = this.checkpointer;
+        if (checkpointer != null && this.t % this.saveInterval == 0) {
+            checkpointer.submit(this.net.copy(), this.t);
+        }
 
-        final Experience[] filtered = Arrays.stream(this.exp).filter(Objects::nonNull).toArray(Experience[]::new);
-        IntStream.range(0, this.learningStepsPerIteration).mapToObj(i -> filtered[this.rand.nextInt(filtered.length)]).forEach(this::learnFromTuple);
-        this.lastReward = reward;
+        if (this.batchSize > 1) {
+            for (int step = 0; step < this.learningStepsPerIteration; step += this.batchSize) {
+                final long sampleStart = this.metrics.start();
+                for (int i = 0; i < this.batch.length; i++) {
+                    this.batch[i] = this.replay.sample(this.rand);
+                }
+                this.metrics.record(Stage.SAMPLE, sampleStart);
+                this.learnFromBatch(this.replay, this.batch, this.targetCache);
+            }
+        } else {
+            for (int step = 0; step < this.learningStepsPerIteration; step++) {
+                final long sampleStart = this.metrics.start();
+                final int slot = this.replay.sample(this.rand);
+                this.metrics.record(Stage.SAMPLE, sampleStart);
+                this.learnFromTuple(this.replayView.at(slot), this.targetCache);
+            }
+        }
+        this.metrics.record(Stage.LEARN, start);
+        this.metrics.recordAllocation(allocated);
+    }
+
+    private void runLearner() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final int slot = this.queue.take();
+                synchronized (this.modelLock) {
+                    this.train(this.queueView.at(slot));
+                    if (this.t % this.snapshotInterval == 0) {
+                        this.publishSnapshot();
+                    }
+                }
+                this.queue.release();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publishSnapshot() {
+        this.snapshot = this.net.copy();
     }
 
-    private void learnFromTuple(final Experience exp) {
-        final Mat tMat = this.calcQ(exp.getCurrentState(), false);
-        final double qMax = exp.getLastReward() + this.gamma * Arrays.stream(tMat.w).max().orElseThrow();
+    boolean isAsync() {
+        return this.learner != null;
+    }
+
+    public void shutdown() {
+        if (this.learner != null) {
+            this.learner.interrupt();
+            try {
+                this.learner.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this.ownsParallel) {
+            this.parallel.shutdown();
+        }
+        this.metrics.unregister();
+        this.closeTransitionLog();
+        this.disableCheckpoints();
+    }
 
-        final Mat pred = this.calcQ(exp.getLastState(), true);
-        double tdError = pred.w[exp.getLastAction()] - qMax;
-        if (FastMath.abs(tdError) > this.tdErrorClamp) {
-            tdError = tdError > this.tdErrorClamp ?
+    public void setCheckpointDirectory(final File directory) {
+        if (this.checkpointer != null) {
+            this.checkpointer.setDirectory(directory);
+        }
+    }
+
+    public void loadLatestCheckpoint() {
+        final File latest = this.checkpointer == null ? null : this.checkpointer.latest();
+        if (latest != null && this.readModel(latest)) {
+            synchronized (this.modelLock) {
+                this.t = (int) this.checkpointer.step(latest);
+            }
+        }
+    }
+
+    void disableCheckpoints() {
+        if (this.checkpointer != null) {
+            this.checkpointer.shutdown();
+            this.checkpointer = null;
+        }
+    }
+
+    Network snapshotNetwork() {
+        return this.learner == null ? this.net.copy() : this.snapshot;
+    }
+
+    public void logTransitions(final File file) {
+        try {
+            this.openTransitionLog(file);
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void openTransitionLog(final File file) throws IOException {
+        this.closeTransitionLog();
+        this.log = TransitionLog.append(file, this.numStates, this.floatExperience);
+    }
+
+    public void closeTransitionLog() {
+        if (this.log == null) {
+            return;
+        }
+        try {
+            this.log.close();
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+        this.log = null;
+    }
+
+    void learnOffline(final TransitionLog log) throws IOException {
+        if (this.learner != null) {
+            throw new IllegalStateException("Offline training needs a synchronous agent");
+        }
+        final long sampleStart = this.metrics.start();
+        final ReplayBuffer buffer = this.batchSize > 1 ? this.offline : this.pending;
+        for (int i = 0; i < this.batch.length; i++) {
+            final long index = this.rand.nextLong(log.size());
+            log.copyStates(index, this.scratchState, this.scratchNextState);
+            this.batch[i] = buffer.add(this.scratchState, log.getAction(index), log.getReward(index), this.scratchNextState, log.isTerminal(index));
+        }
+        this.metrics.record(Stage.SAMPLE, sampleStart);
+        if (this.batchSize > 1) {
+            this.learnFromBatch(buffer, this.batch, null);
+        } else {
+            this.learnFromTuple(this.pendingView.at(this.batch[0]), null);
+        }
+    }
+
+    void remember(final TransitionLog log, final long index) throws IOException {
+        if (this.learner != null) {
+            throw new IllegalStateException("Offline warm start needs a synchronous agent");
+        }
+        log.copyStates(index, this.scratchState, this.scratchNextState);
+        final int slot = this.replay.add(this.scratchState, log.getAction(index), log.getReward(index), this.scratchNextState, log.isTerminal(index));
+        if (this.targetCache != null) {
+            this.targetCache.invalidate(slot);
+        }
+    }
+
+    int getReplayCapacity() {
+        return this.replay.capacity;
+    }
+
+    public long getDroppedTransitions() {
+        return this.metrics.getDroppedTransitions();
+    }
+
+    public Policy toPolicy() {
+        return new Policy(this.exportNetwork());
+    }
+
+    public QuantizedPolicy toQuantizedPolicy() {
+        return new QuantizedPolicy(this.exportNetwork());
+    }
+
+    private Network exportNetwork() {
+        if (this.learner != null) {
+            return this.snapshot;
+        }
+        this.net.flush();
+        return this.net;
+    }
+
+    public MetricsSnapshot getMetrics() {
+        return this.metrics.snapshot();
+    }
+
+    public void resetMetrics() {
+        this.metrics.reset();
+    }
+
+    public void registerMBean() {
+        this.registerMBean(Metrics.nextInstance());
+    }
+
+    void registerMBean(final long instance) {
+        this.metrics.register("de.raimannma.reinforce4j:type=DQN,instance=" + instance + ",agent=" + this.agentIndex);
+    }
+
+    private void learnFromTuple(final Experience exp, final TargetCache cache) {
+        final long forwardStart = this.metrics.start();
+        final double qMax;
+        if (exp.isTerminal()) {
+            qMax = exp.getLastReward();
+        } else if (cache != null && cache.contains(exp.getSlot())) {
+            qMax = exp.getLastReward() + this.gamma * cache.get(exp.getSlot());
+        } else {
+            exp.copyCurrentState(this.workspace, 0);
+            final Mat tMat = this.calcTargetQ(this.workspace);
+            final double max = tMat.get(tMat.argmax(0));
+            if (cache != null) {
+                cache.put(exp.getSlot(), max);
+            }
+            qMax = exp.getLastReward() + this.gamma * max;
+        }
+
+        exp.copyLastState(this.workspace, 0);
+        final Mat pred = this.calcQ(this.workspace, true);
+        final double tdError = this.clampTdError(pred.get(exp.getLastAction()) - qMax);
+        pred.setGrad(exp.getLastAction(), tdError * exp.getImportanceWeight());
+        exp.setTDError(tdError);
+        this.metrics.record(Stage.FORWARD, forwardStart);
+        this.backward(this.workspace);
+    }
+
+    private void learnFromBatch(final ReplayBuffer replay, final int[] batch, final TargetCache cache) {
+        final Workspace ws = this.batchWorkspace;
+        final int cols = batch.length;
+        final long forwardStart = this.metrics.start();
+        boolean cached = true;
+        for (int j = 0; j < cols; j++) {
+            replay.copyNextState(batch[j], ws, j);
+            cached &= cache != null && (replay.isTerminal(batch[j]) || cache.contains(batch[j]));
+        }
+        final Mat tMat = cached ? null : this.calcTargetQ(ws);
+        for (int j = 0; j < cols; j++) {
+            if (replay.isTerminal(batch[j])) {
+                this.batchTargets[j] = replay.getReward(batch[j]);
+                continue;
+            }
+            final double max;
+            if (cache != null && cache.contains(batch[j])) {
+                max = cache.get(batch[j]);
+            } else {
+                max = tMat.get(tMat.argmax(j) * cols + j);
+                if (cache != null) {
+                    cache.put(batch[j], max);
+                }
+            }
+            this.batchTargets[j] = replay.getReward(batch[j]) + this.gamma * max;
+        }
+
+        for (int j = 0; j < cols; j++) {
+            replay.copyState(batch[j], ws, j);
+        }
+        final Mat pred = this.calcQ(ws, true);
+        for (int j = 0; j < cols; j++) {
+            final int index = replay.getAction(batch[j]) * cols + j;
+            final double tdError = this.clampTdError(pred.get(index) - this.batchTargets[j]);
+            pred.setGrad(index, tdError * replay.getImportanceWeight(batch[j]));
+            replay.setTdError(batch[j], tdError);
+        }
+        this.metrics.record(Stage.FORWARD, forwardStart);
+        this.backward(ws);
+    }
+
+    private void backward(final Workspace ws) {
+        final long backwardStart = this.metrics.start();
+        ws.graph.backward();
+        this.metrics.record(Stage.BACKWARD, backwardStart);
+
+        final long updateStart = this.metrics.start();
+        this.update(ws.sparseInput);
+        this.metrics.record(Stage.UPDATE, updateStart);
+    }
+
+    private double clampTdError(final double tdError) {
+        final boolean clamped = FastMath.abs(tdError) > this.tdErrorClamp;
+        this.metrics.recordTdError(tdError, clamped);
+        if (clamped) {
+            return tdError > this.tdErrorClamp ?
                     this.tdErrorClamp :
                     -this.tdErrorClamp;
         }
-        pred.dw[exp.getLastAction()] = tdError;
-        this.graph.backward();
+        return tdError;
+    }
 
-        this.W1.update(this.alpha);
-        this.W2.update(this.alpha);
-        this.B1.update(this.alpha);
-        this.B2.update(this.alpha);
+    private void update(final SparseMat sparseInput) {
+        this.net.update(this.optimizer, this.reducer, sparseInput);
+        this.updates++;
+        if (this.target != null) {
+            this.syncTarget();
+        }
+    }
+
+    private void syncTarget() {
+        if (this.targetSoftUpdate > 0) {
+            this.target.blend(this.net, this.targetSoftUpdate);
+        } else if (this.updates % this.targetUpdateInterval == 0) {
+            this.target.copyFrom(this.net);
+            if (this.targetCache != null) {
+                this.targetCache.clear();
+            }
+        }
     }
 
     public void saveModel() {
@@ -170,6 +682,16 @@ public class DQN {
     }
 
     public void saveModel(final File file) {
+        this.net.flush();
+        if (!DQN.isJson(file)) {
+            try {
+                Checkpoint.write(file, this.net);
+                System.out.println("SAVED");
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
         try {
             if (!file.exists()) {
                 file.createNewFile();
@@ -178,10 +700,13 @@ public class DQN {
                 final BufferedWriter writer = new BufferedWriter(new FileWriter(file), 10 * 1024);
 
                 final JsonObject jsonObject = new JsonObject();
-                jsonObject.addProperty("W1", this.W1.toJson());
-                jsonObject.addProperty("W2", this.W2.toJson());
-                jsonObject.addProperty("B1", this.B1.toJson());
-                jsonObject.addProperty("B2", this.B2.toJson());
+                final int numLayers = this.net.getNumLayers();
+                for (int l = 0; l < numLayers; l++) {
+                    jsonObject.addProperty("W" + (l + 1), this.net.weights[l].toJson());
+                    jsonObject.addProperty("B" + (l + 1), this.net.biases[l].toJson());
+                }
+                jsonObject.addProperty("activation", this.net.activation.ordinal());
+                jsonObject.addProperty("leakySlope", Graph.LEAKY_SLOPE);
 
                 writer.write(jsonObject.toString());
                 writer.close();
@@ -194,10 +719,31 @@ public class DQN {
         }
     }
 
+    private static boolean isJson(final File file) {
+        return file.getName().endsWith(".json");
+    }
+
     public void loadModel() {
-        final File file = new File("agent.json");
+        this.loadModel(new File("agent.json"));
+    }
+
+    public void loadModel(final File file) {
+        this.readModel(file);
+    }
+
+    boolean readModel(final File file) {
         if (!file.exists()) {
-            return;
+            return false;
+        }
+        if (!DQN.isJson(file)) {
+            try {
+                this.setModel(Checkpoint.read(file, this.net.activation));
+                System.out.println("LOADED");
+                return true;
+            } catch (final IOException e) {
+                e.printStackTrace();
+                return false;
+            }
         }
         try {
             final BufferedReader reader = new BufferedReader(new FileReader(file));
@@ -207,15 +753,46 @@ public class DQN {
             final JsonParser parser = new JsonParser();
             final JsonObject jsonObject = parser.parse(json).getAsJsonObject();
 
-            this.W1 = Mat.fromJson(jsonObject.get("W1").getAsString());
-            this.W2 = Mat.fromJson(jsonObject.get("W2").getAsString());
-            this.B1 = Mat.fromJson(jsonObject.get("B1").getAsString());
-            this.B2 = Mat.fromJson(jsonObject.get("B2").getAsString());
+            int numLayers = 0;
+            while (jsonObject.has("W" + (numLayers + 1))) {
+                numLayers++;
+            }
+            final Mat[] nets = new Mat[2 * numLayers];
+            for (int l = 0; l < numLayers; l++) {
+                nets[l] = Mat.fromJson(jsonObject.get("W" + (l + 1)).getAsString());
+                nets[numLayers + l] = Mat.fromJson(jsonObject.get("B" + (l + 1)).getAsString());
+            }
+            final Activation activation = jsonObject.has("activation") ?
+                    Checkpoint.toActivation(jsonObject.get("activation").getAsInt(), jsonObject.get("leakySlope").getAsDouble(), file.toString()) :
+                    this.net.activation;
+            this.setModel(Network.fromArray(nets, activation));
 
             reader.close();
             System.out.println("LOADED");
+            return true;
         } catch (final IOException e) {
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void setModel(final Network net) {
+        synchronized (this.modelLock) {
+            this.net = net.toPrecision(this.floatPrecision).prepare(this.optimizer);
+            this.workspace = this.createWorkspace(1);
+            this.batchWorkspace = this.createWorkspace(this.batchSize);
+            if (this.target != null) {
+                this.target = this.net.copy();
+            }
+            if (this.targetCache != null) {
+                this.targetCache.clear();
+            }
+            if (this.learner == null) {
+                this.actWorkspace = this.workspace;
+            } else {
+                this.actWorkspace = this.createWorkspace(1);
+                this.publishSnapshot();
+            }
         }
     }
 
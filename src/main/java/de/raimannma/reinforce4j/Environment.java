@@ -0,0 +1,11 @@
+package de.raimannma.reinforce4j;
+
+public interface Environment {
+    void reset();
+
+    void getState(double[] state);
+
+    double step(int action);
+
+    boolean isDone();
+}
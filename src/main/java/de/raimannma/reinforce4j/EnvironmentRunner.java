@@ -0,0 +1,51 @@
+package de.raimannma.reinforce4j;
+
+public class EnvironmentRunner {
+    private final MultiAgents agents;
+    private final Environment[] environments;
+    private final double[][] states;
+    private final double[] rewards;
+    private final boolean[] terminals;
+    private long totalSteps;
+
+    public EnvironmentRunner(final MultiAgents agents, final int numStates, final Environment... environments) {
+        if (environments.length != agents.getNumAgents()) {
+            throw new ArrayIndexOutOfBoundsException("Num_Environments != Num_Agents");
+        }
+        this.agents = agents;
+        this.environments = environments;
+        this.states = new double[environments.length][numStates];
+        this.rewards = new double[environments.length];
+        this.terminals = new boolean[environments.length];
+        this.totalSteps = 0;
+        for (final Environment environment : environments) {
+            environment.reset();
+        }
+    }
+
+    public double run(final long steps) {
+        final long start = System.nanoTime();
+        for (long step = 0; step < steps; step++) {
+            for (int i = 0; i < this.environments.length; i++) {
+                this.environments[i].getState(this.states[i]);
+            }
+            final int[] actions = this.agents.act(this.states);
+            for (int i = 0; i < this.environments.length; i++) {
+                final Environment environment = this.environments[i];
+                this.rewards[i] = environment.step(actions[i]);
+                this.terminals[i] = environment.isDone();
+                if (this.terminals[i]) {
+                    environment.reset();
+                }
+            }
+            this.agents.learn(this.rewards, this.terminals);
+        }
+        final long envSteps = steps * this.environments.length;
+        this.totalSteps += envSteps;
+        return envSteps / ((System.nanoTime() - start) / 1e9);
+    }
+
+    public long getTotalSteps() {
+        return this.totalSteps;
+    }
+}
@@ -1,41 +1,56 @@
 package de.raimannma.reinforce4j;
 
 class Experience {
-    private final Mat lastState;
-    private final int lastAction;
-    private final double lastReward;
-    private final Mat currentState;
-    private double tdError;
+    private final ReplayBuffer buffer;
+    private int slot;
 
-    Experience(final Mat lastState, final int lastAction, final double lastReward, final Mat currentState) {
-        this.lastState = lastState;
-        this.lastAction = lastAction;
-        this.lastReward = lastReward;
-        this.currentState = currentState;
-        this.tdError = 0;
+    Experience(final ReplayBuffer buffer) {
+        this.buffer = buffer;
+        this.slot = 0;
     }
 
-    Mat getLastState() {
-        return this.lastState;
+    Experience at(final int slot) {
+        this.slot = slot;
+        return this;
+    }
+
+    int getSlot() {
+        return this.slot;
+    }
+
+    int copyTo(final ReplayBuffer dst) {
+        return dst.add(this.buffer, this.slot);
+    }
+
+    void copyLastState(final Workspace dst, final int col) {
+        this.buffer.copyState(this.slot, dst, col);
     }
 
     int getLastAction() {
-        return this.lastAction;
+        return this.buffer.getAction(this.slot);
     }
 
     double getLastReward() {
-        return this.lastReward;
+        return this.buffer.getReward(this.slot);
+    }
+
+    boolean isTerminal() {
+        return this.buffer.isTerminal(this.slot);
+    }
+
+    void copyCurrentState(final Workspace dst, final int col) {
+        this.buffer.copyNextState(this.slot, dst, col);
     }
 
-    Mat getCurrentState() {
-        return this.currentState;
+    double getImportanceWeight() {
+        return this.buffer.getImportanceWeight(this.slot);
     }
 
     public void setTDError(final double tdError) {
-        this.tdError = tdError;
+        this.buffer.setTdError(this.slot, tdError);
     }
 
     public double getTdError() {
-        return this.tdError;
+        return this.buffer.getTdError(this.slot);
     }
 }
@@ -0,0 +1,35 @@
+package de.raimannma.reinforce4j;
+
+class GradientReducer {
+    private static final int STRIPE_SIZE = 1024;
+    private final Object[][] locks;
+
+    GradientReducer(final Mat... shared) {
+        this.locks = new Object[shared.length][];
+        for (int i = 0; i < shared.length; i++) {
+            final int stripes = (shared[i].size() + GradientReducer.STRIPE_SIZE - 1) / GradientReducer.STRIPE_SIZE;
+            this.locks[i] = new Object[stripes];
+            for (int s = 0; s < stripes; s++) {
+                this.locks[i][s] = new Object();
+            }
+        }
+    }
+
+    void applyColumns(final int index, final Mat local, final Optimizer optimizer, final int[] columns, final int count) {
+        synchronized (this.locks[index]) {
+            optimizer.updateColumns(local, columns, count);
+        }
+    }
+
+    void apply(final int index, final Mat local, final Optimizer optimizer) {
+        final Object[] stripes = this.locks[index];
+        final int size = local.size();
+        for (int s = 0; s < stripes.length; s++) {
+            final int start = s * GradientReducer.STRIPE_SIZE;
+            final int end = Math.min(start + GradientReducer.STRIPE_SIZE, size);
+            synchronized (stripes[s]) {
+                optimizer.update(local, start, end);
+            }
+        }
+    }
+}
@@ -2,116 +2,436 @@ package de.raimannma.reinforce4j;
 
 import net.jafama.FastMath;
 
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Queue;
-import java.util.stream.IntStream;
 
 class Graph {
-    private final boolean needsBackprop;
-    private final Queue<Backprop> backpropQueue;
+    static final double LEAKY_SLOPE = 0.01;
+    private static final int TANH_COST = 16;
 
-    Graph(final boolean needsBackprop) {
+    private final Parallel parallel;
+    private boolean needsBackprop;
+    private Backprop[] tape;
+    private int tapeSize;
+    private double[] scratch;
+
+    Graph(final boolean needsBackprop, final Parallel parallel) {
+        this.parallel = parallel;
+        this.needsBackprop = needsBackprop;
+        this.tape = new Backprop[8];
+        this.tapeSize = 0;
+        this.scratch = new double[0];
+    }
+
+    void reset(final boolean needsBackprop) {
         this.needsBackprop = needsBackprop;
-        this.backpropQueue = new ArrayDeque<>();
+        this.tapeSize = 0;
     }
 
     void backward() {
-        while (!this.backpropQueue.isEmpty()) {
-            final Backprop poll = this.backpropQueue.poll();
-            if (poll != null) {
-                poll.run();
-            }
+        for (int i = this.tapeSize - 1; i >= 0; i--) {
+            this.tape[i].run(this.parallel);
+        }
+        this.tapeSize = 0;
+    }
+
+    Mat tanh(final Mat mat, final Mat out) {
+        assert mat.size() == out.size();
+
+        final int size = mat.size();
+        if (mat.isFloat() && this.scratch.length < size) {
+            this.scratch = new double[size];
+        }
+        if (this.parallel.isParallel(size, Graph.TANH_COST)) {
+            this.parallel.forRange(0, size, Graph.TANH_COST, (from, to) -> this.tanh(mat, out, from, to));
+        } else {
+            this.tanh(mat, out, 0, size);
+        }
+        if (this.needsBackprop) {
+            this.record(BackpropMethod.TANH, mat, null, out);
+        }
+        return out;
+    }
+
+    private void tanh(final Mat mat, final Mat out, final int from, final int to) {
+        if (mat.isFloat()) {
+            Graph.tanh(mat.fw, out.fw, this.scratch, from, to);
+        } else {
+            Graph.tanh(mat.w, out.w, from, to);
+        }
+    }
+
+    private static void tanh(final double[] src, final double[] dst, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            dst[i] = FastMath.tanh(src[i]);
+        }
+    }
+
+    private static void tanh(final float[] src, final float[] dst, final double[] wide, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            wide[i] = src[i];
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = (float) FastMath.tanh(wide[i]);
+        }
+    }
+
+    Mat activate(final Activation activation, final Mat mat, final Mat out) {
+        if (activation == Activation.RELU) {
+            return this.relu(mat, out);
+        } else if (activation == Activation.LEAKY_RELU) {
+            return this.leakyRelu(mat, out);
         }
+        return this.tanh(mat, out);
     }
 
-    Mat tanh(final Mat mat) {
-        final Mat out = new Mat(mat.n, mat.d);
-        Arrays.setAll(out.w, i -> FastMath.tanh(mat.w[i]));
+    Mat relu(final Mat mat, final Mat out) {
+        return this.rectify(mat, out, 0, BackpropMethod.RELU);
+    }
+
+    Mat leakyRelu(final Mat mat, final Mat out) {
+        return this.rectify(mat, out, Graph.LEAKY_SLOPE, BackpropMethod.LEAKY_RELU);
+    }
+
+    private Mat rectify(final Mat mat, final Mat out, final double slope, final BackpropMethod backpropMethod) {
+        assert mat.size() == out.size();
+
+        final int size = mat.size();
+        if (this.parallel.isParallel(size, 1)) {
+            this.parallel.forRange(0, size, 1, (from, to) -> Graph.rectify(mat, out, slope, from, to));
+        } else {
+            Graph.rectify(mat, out, slope, 0, size);
+        }
         if (this.needsBackprop) {
-            this.backpropQueue.add(new Backprop(BackpropMethod.TANH, mat, out));
+            this.record(backpropMethod, mat, null, out);
         }
         return out;
     }
 
-    Mat mul(final Mat mat1, final Mat mat2) {
+    private static void rectify(final Mat mat, final Mat out, final double slope, final int from, final int to) {
+        if (mat.isFloat()) {
+            final float fslope = (float) slope;
+            for (int i = from; i < to; i++) {
+                final float x = mat.fw[i];
+                out.fw[i] = x > 0 ? x : fslope * x;
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                final double x = mat.w[i];
+                out.w[i] = x > 0 ? x : slope * x;
+            }
+        }
+    }
+
+    Mat mul(final Mat mat1, final Mat mat2, final Mat out) {
+        return this.mul(mat1, mat2, out, BackpropMethod.MUL);
+    }
+
+    Mat mulInput(final Mat mat, final Mat input, final Mat out) {
+        return this.mul(mat, input, out, BackpropMethod.MUL_INPUT);
+    }
+
+    private Mat mul(final Mat mat1, final Mat mat2, final Mat out, final BackpropMethod backpropMethod) {
         assert mat1.d == mat2.n;
+        assert out.n == mat1.n && out.d == mat2.d;
 
-        final Mat out = new Mat(mat1.n, mat2.d);
-        IntStream.range(0, mat1.n).forEach(i -> {
-            final int m1i = mat1.d * i;
-            final int m2di = mat2.d * i;
-            IntStream.range(0, mat2.d).forEach(finalJ -> out.w[m2di + finalJ] = IntStream.range(0, mat1.d).mapToDouble(value -> mat1.w[m1i + value] * mat2.w[mat2.d * value + finalJ]).sum());
-        });
+        final long rowCost = (long) mat1.d * mat2.d;
+        if (this.parallel.isParallel(mat1.n, rowCost)) {
+            this.parallel.forRange(0, mat1.n, rowCost, (from, to) -> Graph.mul(mat1, mat2, out, from, to));
+        } else {
+            Graph.mul(mat1, mat2, out, 0, mat1.n);
+        }
+        if (this.needsBackprop) {
+            this.record(backpropMethod, mat1, mat2, out);
+        }
+        return out;
+    }
+
+    private static void mul(final Mat mat1, final Mat mat2, final Mat out, final int from, final int to) {
+        if (mat1.isFloat()) {
+            MatMul.multiply(mat1.fw, mat2.fw, out.fw, from, to, mat1.d, mat2.d);
+        } else {
+            MatMul.multiply(mat1.w, mat2.w, out.w, from, to, mat1.d, mat2.d);
+        }
+    }
+
+    Mat mul(final Mat mat, final SparseMat sparse, final Mat out) {
+        assert mat.d == sparse.n;
+        assert out.n == mat.n && out.d == sparse.d;
+
+        final long rowCost = sparse.totalNonZeros() + sparse.d;
+        if (this.parallel.isParallel(mat.n, rowCost)) {
+            this.parallel.forRange(0, mat.n, rowCost, (from, to) -> Graph.mul(mat, sparse, out, from, to));
+        } else {
+            Graph.mul(mat, sparse, out, 0, mat.n);
+        }
         if (this.needsBackprop) {
-            this.backpropQueue.add(new Backprop(BackpropMethod.MUL, mat1, mat2, out));
+            this.record(BackpropMethod.SPARSE_MUL, mat, null, out).sparse = sparse;
         }
         return out;
     }
 
-    Mat add(final Mat mat1, final Mat mat2) {
-        assert mat1.w.length == mat2.w.length;
+    private static void mul(final Mat mat, final SparseMat sparse, final Mat out, final int from, final int to) {
+        final int m = mat.d;
+        final int d = sparse.d;
+        final int capacity = sparse.capacity;
+        for (int i = from; i < to; i++) {
+            final int wi = i * m;
+            for (int j = 0; j < d; j++) {
+                final int offset = j * capacity;
+                final int end = offset + sparse.nnz[j];
+                if (mat.isFloat()) {
+                    float sum = 0;
+                    for (int k = offset; k < end; k++) {
+                        sum += mat.fw[wi + sparse.indices[k]] * (float) sparse.values[k];
+                    }
+                    out.fw[i * d + j] = sum;
+                } else {
+                    double sum = 0;
+                    for (int k = offset; k < end; k++) {
+                        sum += mat.w[wi + sparse.indices[k]] * sparse.values[k];
+                    }
+                    out.w[i * d + j] = sum;
+                }
+            }
+        }
+    }
+
+    Mat add(final Mat mat1, final Mat mat2, final Mat out) {
+        assert mat1.size() == mat2.size() || (mat1.n == mat2.n && mat2.d == 1);
+        assert mat1.size() == out.size();
 
-        final Mat out = new Mat(mat1.n, mat1.d);
-        IntStream.range(0, mat1.w.length).forEach(i -> out.w[i] = mat1.w[i] + mat2.w[i]);
+        if (this.parallel.isParallel(mat1.n, mat1.d)) {
+            this.parallel.forRange(0, mat1.n, mat1.d, (from, to) -> Graph.add(mat1, mat2, out, from, to));
+        } else {
+            Graph.add(mat1, mat2, out, 0, mat1.n);
+        }
         if (this.needsBackprop) {
-            this.backpropQueue.add(new Backprop(BackpropMethod.ADD, mat1, mat2, out));
+            this.record(BackpropMethod.ADD, mat1, mat2, out);
         }
         return out;
     }
 
+    private static void add(final Mat mat1, final Mat mat2, final Mat out, final int from, final int to) {
+        final boolean broadcast = mat1.size() != mat2.size();
+        final int d = mat1.d;
+        if (mat1.isFloat() && !broadcast) {
+            for (int i = from * d; i < to * d; i++) {
+                out.fw[i] = mat1.fw[i] + mat2.fw[i];
+            }
+        } else if (mat1.isFloat()) {
+            for (int i = from; i < to; i++) {
+                final float b = mat2.fw[i];
+                final int di = d * i;
+                for (int j = 0; j < d; j++) {
+                    out.fw[di + j] = mat1.fw[di + j] + b;
+                }
+            }
+        } else if (!broadcast) {
+            for (int i = from * d; i < to * d; i++) {
+                out.w[i] = mat1.w[i] + mat2.w[i];
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                final double b = mat2.w[i];
+                final int di = d * i;
+                for (int j = 0; j < d; j++) {
+                    out.w[di + j] = mat1.w[di + j] + b;
+                }
+            }
+        }
+    }
+
+    private Backprop record(final BackpropMethod backpropMethod, final Mat mat1, final Mat mat2, final Mat out) {
+        if (this.tapeSize == this.tape.length) {
+            this.tape = Arrays.copyOf(this.tape, this.tape.length * 2);
+        }
+        Backprop backprop = this.tape[this.tapeSize];
+        if (backprop == null) {
+            backprop = new Backprop();
+            this.tape[this.tapeSize] = backprop;
+        }
+        backprop.set(backpropMethod, mat1, mat2, out);
+        out.zeroGrad();
+        this.tapeSize++;
+        return backprop;
+    }
+
     private enum BackpropMethod {
-        ADD, MUL, TANH
+        ADD, MUL, MUL_INPUT, SPARSE_MUL, TANH, RELU, LEAKY_RELU
     }
 
-    private class Backprop {
-        private final BackpropMethod backpropMethod;
-        private final Mat[] args;
+    private static class Backprop {
+        private BackpropMethod backpropMethod;
+        private Mat mat1;
+        private Mat mat2;
+        private Mat out;
+        private SparseMat sparse;
 
-        private Backprop(final BackpropMethod backpropMethod, final Mat... args) {
+        private void set(final BackpropMethod backpropMethod, final Mat mat1, final Mat mat2, final Mat out) {
             this.backpropMethod = backpropMethod;
-            this.args = args;
+            this.mat1 = mat1;
+            this.mat2 = mat2;
+            this.out = out;
+            this.sparse = null;
         }
 
-
-        void run() {
+        void run(final Parallel parallel) {
+            final Mat mat1 = this.mat1;
+            final Mat mat2 = this.mat2;
+            final Mat out = this.out;
             if (this.backpropMethod == BackpropMethod.ADD) {
-                this.addBack(this.args[0], this.args[1], this.args[2]);
+                if (parallel.isParallel(mat1.n, 2L * mat1.d)) {
+                    parallel.forRange(0, mat1.n, 2L * mat1.d, (from, to) -> Backprop.addBack(mat1, mat2, out, from, to));
+                } else {
+                    Backprop.addBack(mat1, mat2, out, 0, mat1.n);
+                }
             } else if (this.backpropMethod == BackpropMethod.MUL) {
-                this.mulBack(this.args[0], this.args[1], this.args[2]);
-            } else if (this.backpropMethod == BackpropMethod.TANH) {
-                this.tanhBack(this.args[0], this.args[1]);
+                Backprop.mulBack(mat1, mat2, out, parallel);
+            } else if (this.backpropMethod == BackpropMethod.MUL_INPUT) {
+                final long rowCost = (long) mat1.d * mat2.d;
+                if (parallel.isParallel(mat1.n, rowCost)) {
+                    parallel.forRange(0, mat1.n, rowCost, (from, to) -> Backprop.mulInputBack(mat1, mat2, out, from, to));
+                } else {
+                    Backprop.mulInputBack(mat1, mat2, out, 0, mat1.n);
+                }
+            } else if (this.backpropMethod == BackpropMethod.SPARSE_MUL) {
+                final SparseMat sparse = this.sparse;
+                final long rowCost = sparse.totalNonZeros() + sparse.d;
+                if (parallel.isParallel(mat1.n, rowCost)) {
+                    parallel.forRange(0, mat1.n, rowCost, (from, to) -> Backprop.sparseMulBack(mat1, sparse, out, from, to));
+                } else {
+                    Backprop.sparseMulBack(mat1, sparse, out, 0, mat1.n);
+                }
+            } else {
+                final double slope = this.backpropMethod == BackpropMethod.LEAKY_RELU ? Graph.LEAKY_SLOPE : 0;
+                final boolean tanh = this.backpropMethod == BackpropMethod.TANH;
+                final int size = mat1.size();
+                if (parallel.isParallel(size, 1)) {
+                    parallel.forRange(0, size, 1, (from, to) -> Backprop.activationBack(mat1, out, tanh, slope, from, to));
+                } else {
+                    Backprop.activationBack(mat1, out, tanh, slope, 0, size);
+                }
             }
         }
 
-        private void addBack(final Mat mat1, final Mat mat2, final Mat out) {
-            IntStream.range(0, mat1.w.length).forEach(i -> {
-                mat1.dw[i] += out.dw[i];
-                mat2.dw[i] += out.dw[i];
-            });
+        private static void addBack(final Mat mat1, final Mat mat2, final Mat out, final int from, final int to) {
+            if (mat1.isFloat()) {
+                Backprop.addBack(mat1.fdw, mat2.fdw, out.fdw, from, to, mat1.d, mat1.size() != mat2.size());
+            } else {
+                Backprop.addBack(mat1.dw, mat2.dw, out.dw, from, to, mat1.d, mat1.size() != mat2.size());
+            }
+        }
+
+        private static void addBack(final double[] dw1, final double[] dw2, final double[] outDw, final int from, final int to, final int d, final boolean broadcast) {
+            if (!broadcast) {
+                for (int i = from * d; i < to * d; i++) {
+                    dw1[i] += outDw[i];
+                    dw2[i] += outDw[i];
+                }
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                final int di = d * i;
+                double sum = 0;
+                for (int j = 0; j < d; j++) {
+                    dw1[di + j] += outDw[di + j];
+                    sum += outDw[di + j];
+                }
+                dw2[i] += sum;
+            }
+        }
+
+        private static void addBack(final float[] dw1, final float[] dw2, final float[] outDw, final int from, final int to, final int d, final boolean broadcast) {
+            if (!broadcast) {
+                for (int i = from * d; i < to * d; i++) {
+                    dw1[i] += outDw[i];
+                    dw2[i] += outDw[i];
+                }
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                final int di = d * i;
+                float sum = 0;
+                for (int j = 0; j < d; j++) {
+                    dw1[di + j] += outDw[di + j];
+                    sum += outDw[di + j];
+                }
+                dw2[i] += sum;
+            }
         }
 
-        private void mulBack(final Mat mat1, final Mat mat2, final Mat out) {
+        private static void mulBack(final Mat mat1, final Mat mat2, final Mat out, final Parallel parallel) {
             final int n = mat1.n;
-            final int m2d = mat2.d;
-            final int m1d = mat1.d;
-            for (int i = 0; i < n; i++) {
-                final int m2di = m2d * i;
-                final int m1di = m1d * i;
-                for (int j = 0; j < m2d; j++) {
-                    final double b = out.dw[m2di + j];
-                    for (int k = 0; k < m1d; k++) {
-                        final int mm1 = m1di + k;
-                        final int mm2 = m2d * k + j;
-                        mat1.dw[mm1] += mat2.w[mm2] * b;
-                        mat2.dw[mm2] += mat1.w[mm1] * b;
+            final int m = mat1.d;
+            final int d = mat2.d;
+            if (!parallel.isParallel(n, 2L * m * d)) {
+                if (mat1.isFloat()) {
+                    MatMul.multiplyBackward(mat1.fw, mat1.fdw, mat2.fw, mat2.fdw, out.fdw, n, m, d);
+                } else {
+                    MatMul.multiplyBackward(mat1.w, mat1.dw, mat2.w, mat2.dw, out.dw, n, m, d);
+                }
+                return;
+            }
+            if (mat1.isFloat()) {
+                parallel.forRange(0, n, (long) m * d, (from, to) -> MatMul.multiplyBackwardLeft(mat1.fdw, mat2.fw, out.fdw, from, to, m, d));
+                parallel.forRange(0, m, (long) n * d, (from, to) -> MatMul.multiplyBackwardRight(mat1.fw, mat2.fdw, out.fdw, n, from, to, m, d));
+            } else {
+                parallel.forRange(0, n, (long) m * d, (from, to) -> MatMul.multiplyBackwardLeft(mat1.dw, mat2.w, out.dw, from, to, m, d));
+                parallel.forRange(0, m, (long) n * d, (from, to) -> MatMul.multiplyBackwardRight(mat1.w, mat2.dw, out.dw, n, from, to, m, d));
+            }
+        }
+
+        private static void mulInputBack(final Mat mat, final Mat input, final Mat out, final int from, final int to) {
+            if (mat.isFloat()) {
+                MatMul.multiplyBackwardLeft(mat.fdw, input.fw, out.fdw, from, to, mat.d, input.d);
+            } else {
+                MatMul.multiplyBackwardLeft(mat.dw, input.w, out.dw, from, to, mat.d, input.d);
+            }
+        }
+
+        private static void sparseMulBack(final Mat mat, final SparseMat sparse, final Mat out, final int from, final int to) {
+            final int m = mat.d;
+            final int d = sparse.d;
+            final int capacity = sparse.capacity;
+            for (int i = from; i < to; i++) {
+                final int wi = i * m;
+                for (int j = 0; j < d; j++) {
+                    final int offset = j * capacity;
+                    final int end = offset + sparse.nnz[j];
+                    if (mat.isFloat()) {
+                        final float g = out.fdw[i * d + j];
+                        for (int k = offset; k < end; k++) {
+                            mat.fdw[wi + sparse.indices[k]] += g * (float) sparse.values[k];
+                        }
+                    } else {
+                        final double g = out.dw[i * d + j];
+                        for (int k = offset; k < end; k++) {
+                            mat.dw[wi + sparse.indices[k]] += g * sparse.values[k];
+                        }
                     }
                 }
             }
         }
 
-        private void tanhBack(final Mat mat, final Mat out) {
-            IntStream.range(0, mat.w.length).parallel().forEach(i -> mat.dw[i] += (1 - out.w[i] * out.w[i]) * out.dw[i]);
+        private static void activationBack(final Mat mat, final Mat out, final boolean tanh, final double slope, final int from, final int to) {
+            if (mat.isFloat() && tanh) {
+                for (int i = from; i < to; i++) {
+                    mat.fdw[i] += (1 - out.fw[i] * out.fw[i]) * out.fdw[i];
+                }
+            } else if (mat.isFloat()) {
+                final float fslope = (float) slope;
+                for (int i = from; i < to; i++) {
+                    mat.fdw[i] += out.fw[i] > 0 ? out.fdw[i] : fslope * out.fdw[i];
+                }
+            } else if (tanh) {
+                for (int i = from; i < to; i++) {
+                    mat.dw[i] += (1 - out.w[i] * out.w[i]) * out.dw[i];
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    mat.dw[i] += out.w[i] > 0 ? out.dw[i] : slope * out.dw[i];
+                }
+            }
         }
     }
 }
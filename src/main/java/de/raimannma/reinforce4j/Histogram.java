@@ -0,0 +1,60 @@
+package de.raimannma.reinforce4j;
+
+class Histogram {
+    private static final int BUCKETS = 65;
+
+    private final long[] buckets;
+    private long count;
+    private long sum;
+    private long max;
+
+    Histogram() {
+        this.buckets = new long[Histogram.BUCKETS];
+    }
+
+    private Histogram(final Histogram histogram) {
+        this.buckets = histogram.buckets.clone();
+        this.count = histogram.count;
+        this.sum = histogram.sum;
+        this.max = histogram.max;
+    }
+
+    void record(final long value) {
+        final long clamped = value > 0 ? value : 0;
+        this.buckets[64 - Long.numberOfLeadingZeros(clamped)]++;
+        this.count++;
+        this.sum += clamped;
+        if (clamped > this.max) {
+            this.max = clamped;
+        }
+    }
+
+    long getCount() {
+        return this.count;
+    }
+
+    double getMean() {
+        return this.count == 0 ? 0 : (double) this.sum / this.count;
+    }
+
+    long getMax() {
+        return this.max;
+    }
+
+    long getPercentile(final double percentile) {
+        final long rank = (long) Math.ceil(percentile / 100 * this.count);
+        long seen = 0;
+        for (int i = 0; i < this.buckets.length; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank && seen > 0) {
+                final long upper = i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, this.max);
+            }
+        }
+        return this.max;
+    }
+
+    Histogram copy() {
+        return new Histogram(this);
+    }
+}
@@ -3,19 +3,34 @@ package de.raimannma.reinforce4j;
 import com.google.gson.GsonBuilder;
 
 import java.util.Arrays;
-import java.util.stream.IntStream;
 
 class Mat {
     final int d;
     final int n;
     double[] w;
     double[] dw;
+    float[] fw;
+    float[] fdw;
+    transient double[] m;
+    transient double[] v;
+    transient float[] fm;
+    transient float[] fv;
+    transient Optimizer.Steps steps;
 
     Mat(final int n, final int d) {
+        this(n, d, false);
+    }
+
+    Mat(final int n, final int d, final boolean floatPrecision) {
         this.n = n;
         this.d = d;
-        this.w = Mat.zeros(n * d);
-        this.dw = Mat.zeros(n * d);
+        if (floatPrecision) {
+            this.fw = new float[n * d];
+            this.fdw = new float[n * d];
+        } else {
+            this.w = Mat.zeros(n * d);
+            this.dw = Mat.zeros(n * d);
+        }
     }
 
     private static double[] zeros(final int size) {
@@ -31,13 +46,167 @@ class Mat {
         this.dw = Mat.zeros(this.n * this.d);
     }
 
+    Mat(final int n, final int d, final float[] arr) {
+        this.n = n;
+        this.d = d;
+        this.fw = arr;
+        this.fdw = new float[this.n * this.d];
+    }
+
+    boolean isFloat() {
+        return this.fw != null;
+    }
+
+    int size() {
+        return this.n * this.d;
+    }
+
+    double get(final int i) {
+        return this.fw != null ? this.fw[i] : this.w[i];
+    }
+
+    void set(final int i, final double value) {
+        if (this.fw != null) {
+            this.fw[i] = (float) value;
+        } else {
+            this.w[i] = value;
+        }
+    }
+
+    double getGrad(final int i) {
+        return this.fdw != null ? this.fdw[i] : this.dw[i];
+    }
+
+    void setGrad(final int i, final double value) {
+        if (this.fdw != null) {
+            this.fdw[i] = (float) value;
+        } else {
+            this.dw[i] = value;
+        }
+    }
+
+    void zeroGrad() {
+        if (this.fdw != null) {
+            Arrays.fill(this.fdw, 0);
+        } else {
+            Arrays.fill(this.dw, 0);
+        }
+    }
+
+    void setColumn(final int col, final double[] src, final int srcOffset) {
+        if (this.fw != null) {
+            for (int i = 0; i < this.n; i++) {
+                this.fw[i * this.d + col] = (float) src[srcOffset + i];
+            }
+        } else if (this.d == 1) {
+            System.arraycopy(src, srcOffset, this.w, 0, this.n);
+        } else {
+            for (int i = 0; i < this.n; i++) {
+                this.w[i * this.d + col] = src[srcOffset + i];
+            }
+        }
+    }
+
+    void setColumn(final int col, final float[] src, final int srcOffset) {
+        if (this.fw != null && this.d == 1) {
+            System.arraycopy(src, srcOffset, this.fw, 0, this.n);
+        } else if (this.fw != null) {
+            for (int i = 0; i < this.n; i++) {
+                this.fw[i * this.d + col] = src[srcOffset + i];
+            }
+        } else {
+            for (int i = 0; i < this.n; i++) {
+                this.w[i * this.d + col] = src[srcOffset + i];
+            }
+        }
+    }
+
+    int argmax(final int col) {
+        int maxIndex = 0;
+        double maxVal = this.get(col);
+        for (int i = 1; i < this.n; i++) {
+            final double val = this.get(i * this.d + col);
+            if (val > maxVal) {
+                maxIndex = i;
+                maxVal = val;
+            }
+        }
+        return maxIndex;
+    }
+
+    Mat prepare(final Optimizer.Type type) {
+        final boolean needsMomentum = type == Optimizer.Type.MOMENTUM || type == Optimizer.Type.ADAM;
+        final boolean needsVelocity = type == Optimizer.Type.RMSPROP || type == Optimizer.Type.ADAM;
+        if (this.fw != null) {
+            if (needsMomentum && this.fm == null) {
+                this.fm = new float[this.fw.length];
+            }
+            if (needsVelocity && this.fv == null) {
+                this.fv = new float[this.fw.length];
+            }
+        } else {
+            if (needsMomentum && this.m == null) {
+                this.m = new double[this.w.length];
+            }
+            if (needsVelocity && this.v == null) {
+                this.v = new double[this.w.length];
+            }
+        }
+        return this;
+    }
+
+    Mat share() {
+        final Mat mat = this.fw != null ? new Mat(this.n, this.d, this.fw) : new Mat(this.n, this.d, this.w);
+        mat.m = this.m;
+        mat.v = this.v;
+        mat.fm = this.fm;
+        mat.fv = this.fv;
+        mat.steps = this.steps;
+        return mat;
+    }
+
+    Mat copy() {
+        return this.fw != null ? new Mat(this.n, this.d, this.fw.clone()) : new Mat(this.n, this.d, this.w.clone());
+    }
+
+    void copyFrom(final Mat mat) {
+        if (this.fw != null) {
+            System.arraycopy(mat.fw, 0, this.fw, 0, this.fw.length);
+        } else {
+            System.arraycopy(mat.w, 0, this.w, 0, this.w.length);
+        }
+    }
+
+    void blend(final Mat mat, final double tau) {
+        if (this.fw != null) {
+            final float rate = (float) tau;
+            for (int i = 0; i < this.fw.length; i++) {
+                this.fw[i] += rate * (mat.fw[i] - this.fw[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < this.w.length; i++) {
+            this.w[i] += tau * (mat.w[i] - this.w[i]);
+        }
+    }
+
+    Mat toPrecision(final boolean floatPrecision) {
+        if (this.isFloat() == floatPrecision) {
+            return this;
+        }
+        final Mat mat = new Mat(this.n, this.d, floatPrecision);
+        for (int i = 0; i < this.size(); i++) {
+            mat.set(i, this.get(i));
+        }
+        return mat;
+    }
+
     public static Mat fromJson(final String json) {
         return new GsonBuilder().setPrettyPrinting().create().fromJson(json, Mat.class);
     }
 
-    void update(final double val) {
-        IntStream.range(0, this.w.length).forEach(i -> this.w[i] -= val * this.dw[i]);
-        Arrays.fill(this.dw, 0);
+    void update(final Optimizer optimizer) {
+        optimizer.update(this, 0, this.size());
     }
 
     public String toJson() {
@@ -49,8 +218,8 @@ class Mat {
         return "Mat{" +
                 "d=" + this.d +
                 ", n=" + this.n +
-                ", w=" + Arrays.toString(this.w) +
-                ", dw=" + Arrays.toString(this.dw) +
+                ", w=" + (this.fw != null ? Arrays.toString(this.fw) : Arrays.toString(this.w)) +
+                ", dw=" + (this.fdw != null ? Arrays.toString(this.fdw) : Arrays.toString(this.dw)) +
                 '}';
     }
 }
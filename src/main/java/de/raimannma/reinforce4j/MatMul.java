@@ -0,0 +1,316 @@
+package de.raimannma.reinforce4j;
+
+import java.util.Arrays;
+
+final class MatMul {
+    private static final int BLOCK_SIZE = 256;
+
+    private MatMul() {
+    }
+
+    static void multiply(final double[] a, final double[] b, final double[] out, final int rowStart, final int rowEnd, final int m, final int d) {
+        if (d == 1) {
+            MatMul.multiplyVector(a, b, out, rowStart, rowEnd, m);
+            return;
+        }
+        Arrays.fill(out, rowStart * d, rowEnd * d, 0);
+        for (int k0 = 0; k0 < m; k0 += BLOCK_SIZE) {
+            final int k1 = Math.min(k0 + BLOCK_SIZE, m);
+            int i = rowStart;
+            for (; i + 3 < rowEnd; i += 4) {
+                final int a0 = i * m;
+                final int a1 = a0 + m;
+                final int a2 = a1 + m;
+                final int a3 = a2 + m;
+                final int o0 = i * d;
+                final int o1 = o0 + d;
+                final int o2 = o1 + d;
+                final int o3 = o2 + d;
+                for (int k = k0; k < k1; k++) {
+                    final double v0 = a[a0 + k];
+                    final double v1 = a[a1 + k];
+                    final double v2 = a[a2 + k];
+                    final double v3 = a[a3 + k];
+                    final int bk = k * d;
+                    for (int j = 0; j < d; j++) {
+                        final double bv = b[bk + j];
+                        out[o0 + j] += v0 * bv;
+                        out[o1 + j] += v1 * bv;
+                        out[o2 + j] += v2 * bv;
+                        out[o3 + j] += v3 * bv;
+                    }
+                }
+            }
+            for (; i < rowEnd; i++) {
+                final int ai = i * m;
+                final int oi = i * d;
+                for (int k = k0; k < k1; k++) {
+                    final double v = a[ai + k];
+                    final int bk = k * d;
+                    for (int j = 0; j < d; j++) {
+                        out[oi + j] += v * b[bk + j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void multiplyVector(final double[] a, final double[] b, final double[] out, final int rowStart, final int rowEnd, final int m) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int ai = i * m;
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            int k = 0;
+            for (; k + 3 < m; k += 4) {
+                s0 += a[ai + k] * b[k];
+                s1 += a[ai + k + 1] * b[k + 1];
+                s2 += a[ai + k + 2] * b[k + 2];
+                s3 += a[ai + k + 3] * b[k + 3];
+            }
+            for (; k < m; k++) {
+                s0 += a[ai + k] * b[k];
+            }
+            out[i] = (s0 + s1) + (s2 + s3);
+        }
+    }
+
+    static void multiplyBackward(final double[] a, final double[] aDw, final double[] b, final double[] bDw, final double[] outDw, final int n, final int m, final int d) {
+        if (d == 1) {
+            MatMul.multiplyVectorBackward(a, aDw, b, bDw, outDw, n, m);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            for (int k = 0; k < m; k++) {
+                final double v = a[ai + k];
+                final int bk = k * d;
+                double sum = 0;
+                for (int j = 0; j < d; j++) {
+                    final double g = outDw[oi + j];
+                    sum += g * b[bk + j];
+                    bDw[bk + j] += v * g;
+                }
+                aDw[ai + k] += sum;
+            }
+        }
+    }
+
+    private static void multiplyVectorBackward(final double[] a, final double[] aDw, final double[] b, final double[] bDw, final double[] outDw, final int n, final int m) {
+        for (int i = 0; i < n; i++) {
+            final double g = outDw[i];
+            if (g == 0) {
+                continue;
+            }
+            final int ai = i * m;
+            for (int k = 0; k < m; k++) {
+                aDw[ai + k] += b[k] * g;
+                bDw[k] += a[ai + k] * g;
+            }
+        }
+    }
+
+    static void multiplyBackwardLeft(final double[] aDw, final double[] b, final double[] outDw, final int rowStart, final int rowEnd, final int m, final int d) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            if (d == 1) {
+                final double g = outDw[i];
+                if (g == 0) {
+                    continue;
+                }
+                for (int k = 0; k < m; k++) {
+                    aDw[ai + k] += b[k] * g;
+                }
+                continue;
+            }
+            for (int k = 0; k < m; k++) {
+                final int bk = k * d;
+                double sum = 0;
+                for (int j = 0; j < d; j++) {
+                    sum += outDw[oi + j] * b[bk + j];
+                }
+                aDw[ai + k] += sum;
+            }
+        }
+    }
+
+    static void multiplyBackwardRight(final double[] a, final double[] bDw, final double[] outDw, final int n, final int kStart, final int kEnd, final int m, final int d) {
+        for (int i = 0; i < n; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            if (d == 1) {
+                final double g = outDw[i];
+                if (g == 0) {
+                    continue;
+                }
+                for (int k = kStart; k < kEnd; k++) {
+                    bDw[k] += a[ai + k] * g;
+                }
+                continue;
+            }
+            for (int k = kStart; k < kEnd; k++) {
+                final double v = a[ai + k];
+                final int bk = k * d;
+                for (int j = 0; j < d; j++) {
+                    bDw[bk + j] += v * outDw[oi + j];
+                }
+            }
+        }
+    }
+
+    static void multiply(final float[] a, final float[] b, final float[] out, final int rowStart, final int rowEnd, final int m, final int d) {
+        if (d == 1) {
+            MatMul.multiplyVector(a, b, out, rowStart, rowEnd, m);
+            return;
+        }
+        Arrays.fill(out, rowStart * d, rowEnd * d, 0);
+        for (int k0 = 0; k0 < m; k0 += BLOCK_SIZE) {
+            final int k1 = Math.min(k0 + BLOCK_SIZE, m);
+            int i = rowStart;
+            for (; i + 3 < rowEnd; i += 4) {
+                final int a0 = i * m;
+                final int a1 = a0 + m;
+                final int a2 = a1 + m;
+                final int a3 = a2 + m;
+                final int o0 = i * d;
+                final int o1 = o0 + d;
+                final int o2 = o1 + d;
+                final int o3 = o2 + d;
+                for (int k = k0; k < k1; k++) {
+                    final float v0 = a[a0 + k];
+                    final float v1 = a[a1 + k];
+                    final float v2 = a[a2 + k];
+                    final float v3 = a[a3 + k];
+                    final int bk = k * d;
+                    for (int j = 0; j < d; j++) {
+                        final float bv = b[bk + j];
+                        out[o0 + j] += v0 * bv;
+                        out[o1 + j] += v1 * bv;
+                        out[o2 + j] += v2 * bv;
+                        out[o3 + j] += v3 * bv;
+                    }
+                }
+            }
+            for (; i < rowEnd; i++) {
+                final int ai = i * m;
+                final int oi = i * d;
+                for (int k = k0; k < k1; k++) {
+                    final float v = a[ai + k];
+                    final int bk = k * d;
+                    for (int j = 0; j < d; j++) {
+                        out[oi + j] += v * b[bk + j];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void multiplyVector(final float[] a, final float[] b, final float[] out, final int rowStart, final int rowEnd, final int m) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int ai = i * m;
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int k = 0;
+            for (; k + 3 < m; k += 4) {
+                s0 += a[ai + k] * b[k];
+                s1 += a[ai + k + 1] * b[k + 1];
+                s2 += a[ai + k + 2] * b[k + 2];
+                s3 += a[ai + k + 3] * b[k + 3];
+            }
+            for (; k < m; k++) {
+                s0 += a[ai + k] * b[k];
+            }
+            out[i] = (s0 + s1) + (s2 + s3);
+        }
+    }
+
+    static void multiplyBackward(final float[] a, final float[] aDw, final float[] b, final float[] bDw, final float[] outDw, final int n, final int m, final int d) {
+        if (d == 1) {
+            MatMul.multiplyVectorBackward(a, aDw, b, bDw, outDw, n, m);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            for (int k = 0; k < m; k++) {
+                final float v = a[ai + k];
+                final int bk = k * d;
+                float sum = 0;
+                for (int j = 0; j < d; j++) {
+                    final float g = outDw[oi + j];
+                    sum += g * b[bk + j];
+                    bDw[bk + j] += v * g;
+                }
+                aDw[ai + k] += sum;
+            }
+        }
+    }
+
+    private static void multiplyVectorBackward(final float[] a, final float[] aDw, final float[] b, final float[] bDw, final float[] outDw, final int n, final int m) {
+        for (int i = 0; i < n; i++) {
+            final float g = outDw[i];
+            if (g == 0) {
+                continue;
+            }
+            final int ai = i * m;
+            for (int k = 0; k < m; k++) {
+                aDw[ai + k] += b[k] * g;
+                bDw[k] += a[ai + k] * g;
+            }
+        }
+    }
+
+    static void multiplyBackwardLeft(final float[] aDw, final float[] b, final float[] outDw, final int rowStart, final int rowEnd, final int m, final int d) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            if (d == 1) {
+                final float g = outDw[i];
+                if (g == 0) {
+                    continue;
+                }
+                for (int k = 0; k < m; k++) {
+                    aDw[ai + k] += b[k] * g;
+                }
+                continue;
+            }
+            for (int k = 0; k < m; k++) {
+                final int bk = k * d;
+                float sum = 0;
+                for (int j = 0; j < d; j++) {
+                    sum += outDw[oi + j] * b[bk + j];
+                }
+                aDw[ai + k] += sum;
+            }
+        }
+    }
+
+    static void multiplyBackwardRight(final float[] a, final float[] bDw, final float[] outDw, final int n, final int kStart, final int kEnd, final int m, final int d) {
+        for (int i = 0; i < n; i++) {
+            final int ai = i * m;
+            final int oi = i * d;
+            if (d == 1) {
+                final float g = outDw[i];
+                if (g == 0) {
+                    continue;
+                }
+                for (int k = kStart; k < kEnd; k++) {
+                    bDw[k] += a[ai + k] * g;
+                }
+                continue;
+            }
+            for (int k = kStart; k < kEnd; k++) {
+                final float v = a[ai + k];
+                final int bk = k * d;
+                for (int j = 0; j < d; j++) {
+                    bDw[bk + j] += v * outDw[oi + j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package de.raimannma.reinforce4j;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+class Metrics implements MetricsMXBean {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final boolean timed;
+    private final ReplayBuffer replay;
+    private final Histogram[] histograms;
+    private long startNanos;
+    private long steps;
+    private long tdErrors;
+    private double tdErrorSum;
+    private double tdErrorMax;
+    private long clamped;
+    private final LongAdder allocatedBytes = new LongAdder();
+    private long droppedTransitions;
+    private ObjectName objectName;
+
+    Metrics(final boolean timed, final ReplayBuffer replay) {
+        this.timed = timed;
+        this.replay = replay;
+        this.histograms = new Histogram[Stage.values().length];
+        this.reset();
+    }
+
+    long start() {
+        return this.timed ? System.nanoTime() : 0;
+    }
+
+    void record(final Stage stage, final long start) {
+        if (this.timed) {
+            this.histograms[stage.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    long allocated() {
+        return this.timed ? Metrics.threadAllocatedBytes() : 0;
+    }
+
+    void recordAllocation(final long allocated) {
+        if (this.timed) {
+            this.allocatedBytes.add(Metrics.threadAllocatedBytes() - allocated);
+        }
+    }
+
+    private static long threadAllocatedBytes() {
+        if (Metrics.THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) Metrics.THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    void step() {
+        this.steps++;
+    }
+
+    void drop() {
+        this.droppedTransitions++;
+    }
+
+    void recordTdError(final double tdError, final boolean clamped) {
+        final double abs = Math.abs(tdError);
+        this.tdErrors++;
+        this.tdErrorSum += abs;
+        if (abs > this.tdErrorMax) {
+            this.tdErrorMax = abs;
+        }
+        if (clamped) {
+            this.clamped++;
+        }
+    }
+
+    MetricsSnapshot snapshot() {
+        final Histogram[] histograms = new Histogram[this.histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = this.histograms[i].copy();
+        }
+        return new MetricsSnapshot(histograms, this.steps, System.nanoTime() - this.startNanos, this.tdErrors, this.tdErrorSum, this.tdErrorMax,
+                this.clamped, this.allocatedBytes.sum(), this.replay.size(), this.replay.capacity, this.droppedTransitions);
+    }
+
+    static long nextInstance() {
+        return Metrics.INSTANCES.incrementAndGet();
+    }
+
+    void register(final String name) {
+        this.unregister();
+        try {
+            final ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (final InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("MBean already registered: " + name, e);
+        } catch (final JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (final JMException e) {
+            e.printStackTrace();
+        }
+        this.objectName = null;
+    }
+
+    @Override
+    public long getSteps() {
+        return this.steps;
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return this.snapshot().getStepsPerSecond();
+    }
+
+    @Override
+    public double getActMeanNanos() {
+        return this.histograms[Stage.ACT.ordinal()].getMean();
+    }
+
+    @Override
+    public long getActP99Nanos() {
+        return this.histograms[Stage.ACT.ordinal()].getPercentile(99);
+    }
+
+    @Override
+    public double getLearnMeanNanos() {
+        return this.histograms[Stage.LEARN.ordinal()].getMean();
+    }
+
+    @Override
+    public long getLearnP99Nanos() {
+        return this.histograms[Stage.LEARN.ordinal()].getPercentile(99);
+    }
+
+    @Override
+    public double getSampleMeanNanos() {
+        return this.histograms[Stage.SAMPLE.ordinal()].getMean();
+    }
+
+    @Override
+    public double getForwardMeanNanos() {
+        return this.histograms[Stage.FORWARD.ordinal()].getMean();
+    }
+
+    @Override
+    public double getBackwardMeanNanos() {
+        return this.histograms[Stage.BACKWARD.ordinal()].getMean();
+    }
+
+    @Override
+    public double getUpdateMeanNanos() {
+        return this.histograms[Stage.UPDATE.ordinal()].getMean();
+    }
+
+    @Override
+    public double getTdErrorMean() {
+        return this.tdErrors == 0 ? 0 : this.tdErrorSum / this.tdErrors;
+    }
+
+    @Override
+    public double getTdErrorMax() {
+        return this.tdErrorMax;
+    }
+
+    @Override
+    public double getClampRate() {
+        return this.tdErrors == 0 ? 0 : (double) this.clamped / this.tdErrors;
+    }
+
+    @Override
+    public double getReplayFill() {
+        return (double) this.replay.size() / this.replay.capacity;
+    }
+
+    @Override
+    public double getAllocatedBytesPerStep() {
+        return this.steps == 0 ? 0 : (double) this.allocatedBytes.sum() / this.steps;
+    }
+
+    @Override
+    public long getDroppedTransitions() {
+        return this.droppedTransitions;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new Histogram();
+        }
+        this.startNanos = System.nanoTime();
+        this.steps = 0;
+        this.tdErrors = 0;
+        this.tdErrorSum = 0;
+        this.tdErrorMax = 0;
+        this.clamped = 0;
+        this.allocatedBytes.reset();
+        this.droppedTransitions = 0;
+    }
+}
@@ -0,0 +1,37 @@
+package de.raimannma.reinforce4j;
+
+public interface MetricsMXBean {
+    long getSteps();
+
+    double getStepsPerSecond();
+
+    double getActMeanNanos();
+
+    long getActP99Nanos();
+
+    double getLearnMeanNanos();
+
+    long getLearnP99Nanos();
+
+    double getSampleMeanNanos();
+
+    double getForwardMeanNanos();
+
+    double getBackwardMeanNanos();
+
+    double getUpdateMeanNanos();
+
+    double getTdErrorMean();
+
+    double getTdErrorMax();
+
+    double getClampRate();
+
+    double getReplayFill();
+
+    double getAllocatedBytesPerStep();
+
+    long getDroppedTransitions();
+
+    void reset();
+}
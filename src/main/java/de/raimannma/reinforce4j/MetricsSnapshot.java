@@ -0,0 +1,101 @@
+package de.raimannma.reinforce4j;
+
+public class MetricsSnapshot {
+    private final Histogram[] histograms;
+    private final long steps;
+    private final long elapsedNanos;
+    private final long tdErrors;
+    private final double tdErrorSum;
+    private final double tdErrorMax;
+    private final long clamped;
+    private final long allocatedBytes;
+    private final int replaySize;
+    private final int replayCapacity;
+    private final long droppedTransitions;
+
+    MetricsSnapshot(final Histogram[] histograms, final long steps, final long elapsedNanos, final long tdErrors, final double tdErrorSum, final double tdErrorMax,
+                    final long clamped, final long allocatedBytes, final int replaySize, final int replayCapacity, final long droppedTransitions) {
+        this.histograms = histograms;
+        this.steps = steps;
+        this.elapsedNanos = elapsedNanos;
+        this.tdErrors = tdErrors;
+        this.tdErrorSum = tdErrorSum;
+        this.tdErrorMax = tdErrorMax;
+        this.clamped = clamped;
+        this.allocatedBytes = allocatedBytes;
+        this.replaySize = replaySize;
+        this.replayCapacity = replayCapacity;
+        this.droppedTransitions = droppedTransitions;
+    }
+
+    public long getSteps() {
+        return this.steps;
+    }
+
+    public double getStepsPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.steps * 1e9 / this.elapsedNanos;
+    }
+
+    public long getCount(final Stage stage) {
+        return this.histograms[stage.ordinal()].getCount();
+    }
+
+    public double getMeanNanos(final Stage stage) {
+        return this.histograms[stage.ordinal()].getMean();
+    }
+
+    public long getPercentileNanos(final Stage stage, final double percentile) {
+        return this.histograms[stage.ordinal()].getPercentile(percentile);
+    }
+
+    public long getMaxNanos(final Stage stage) {
+        return this.histograms[stage.ordinal()].getMax();
+    }
+
+    public double getTdErrorMean() {
+        return this.tdErrors == 0 ? 0 : this.tdErrorSum / this.tdErrors;
+    }
+
+    public double getTdErrorMax() {
+        return this.tdErrorMax;
+    }
+
+    public double getClampRate() {
+        return this.tdErrors == 0 ? 0 : (double) this.clamped / this.tdErrors;
+    }
+
+    public int getReplaySize() {
+        return this.replaySize;
+    }
+
+    public double getReplayFill() {
+        return this.replayCapacity == 0 ? 0 : (double) this.replaySize / this.replayCapacity;
+    }
+
+    public double getAllocatedBytesPerStep() {
+        return this.steps == 0 ? 0 : (double) this.allocatedBytes / this.steps;
+    }
+
+    public long getDroppedTransitions() {
+        return this.droppedTransitions;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("MetricsSnapshot{");
+        builder.append("steps=").append(this.steps)
+                .append(", stepsPerSecond=").append(this.getStepsPerSecond());
+        for (final Stage stage : Stage.values()) {
+            builder.append(", ").append(stage).append("={mean=").append(this.getMeanNanos(stage))
+                    .append(", p99=").append(this.getPercentileNanos(stage, 99))
+                    .append(", max=").append(this.getMaxNanos(stage)).append('}');
+        }
+        return builder.append(", tdErrorMean=").append(this.getTdErrorMean())
+                .append(", tdErrorMax=").append(this.tdErrorMax)
+                .append(", clampRate=").append(this.getClampRate())
+                .append(", replayFill=").append(this.getReplayFill())
+                .append(", allocatedBytesPerStep=").append(this.getAllocatedBytesPerStep())
+                .append(", droppedTransitions=").append(this.droppedTransitions)
+                .append('}').toString();
+    }
+}
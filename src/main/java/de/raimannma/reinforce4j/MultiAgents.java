@@ -1,52 +1,235 @@
 package de.raimannma.reinforce4j;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
 public class MultiAgents {
     public final DQN[] agents;
     private final Map<Option, Double> config;
-    Mat W1, W2, B1, B2;
+    private final Parallel parallel;
+    private final SplittableRandom random;
+    private final int saveInterval;
+    private final Checkpointer checkpointer;
+    Network net;
+    private Workspace actWorkspace;
+    private final long instance = Metrics.nextInstance();
+    private boolean mbeans;
+    private File logDirectory;
+    private long steps;
 
     public MultiAgents(final int numAgents, final int numActions, final int numStates, final Map<Option, Double> config) {
-        this.config = config;
-        final int numHiddenUnits = DQN.toInteger(config.getOrDefault(Option.NUM_HIDDEN_UNITS, 100.0));
-        this.W1 = DQN.createRandMat(numHiddenUnits, numStates);
-        this.W2 = DQN.createRandMat(numActions, numHiddenUnits);
-        this.B1 = new Mat(numHiddenUnits, 1);
-        this.B2 = new Mat(numActions, 1);
+        this(numAgents, config, DQN.layerSizes(numStates, numActions, config));
+    }
 
+    public MultiAgents(final int numAgents, final int numActions, final int numStates, final Map<Option, Double> config, final int... hiddenUnits) {
+        this(numAgents, config, DQN.layerSizes(numStates, numActions, hiddenUnits));
+    }
+
+    private MultiAgents(final int numAgents, final Map<Option, Double> config, final int[] sizes) {
+        this.config = config;
+        this.random = DQN.createRandom(config);
+        this.net = Network.create(sizes, DQN.toActivation(config), config.getOrDefault(Option.FLOAT_PRECISION, 0.0) != 0, this.random.split());
+        this.parallel = Parallel.create(config);
+        this.saveInterval = DQN.toInteger(config.getOrDefault(Option.SAVE_INTERVAL, 0.0));
+        this.checkpointer = this.saveInterval > 0 ?
+                new Checkpointer(new File("checkpoints"), "agents", DQN.toInteger(config.getOrDefault(Option.CHECKPOINT_KEEP, 3.0))) :
+                null;
 
         this.agents = new DQN[numAgents];
-        Arrays.setAll(this.agents, i -> new DQN(numActions, numStates, config, i, new Mat[]{this.W1, this.W2, this.B1, this.B2}));
+        this.createAgents(sizes[sizes.length - 1], sizes[0]);
+    }
+
+    private void createAgents(final int numActions, final int numStates) {
+        final Mat[] nets = this.net.toArray();
+        final GradientReducer reducer = this.config.getOrDefault(Option.HOGWILD, 0.0) != 0 ? null : new GradientReducer(nets);
+        final SplittableRandom[] randoms = new SplittableRandom[this.agents.length];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = this.random.split();
+        }
+        Arrays.setAll(this.agents, i -> new DQN(numActions, numStates, this.config, i, this.net, reducer, this.parallel, randoms[i]));
+        for (final DQN agent : this.agents) {
+            agent.disableCheckpoints();
+        }
+        final int sparseCapacity = DQN.toInteger(this.config.getOrDefault(Option.SPARSE_CAPACITY, 0.0));
+        this.actWorkspace = new Workspace(this.net.getSizes(), this.agents.length, this.net.isFloat(), sparseCapacity, this.parallel);
     }
 
     public int[] act(final double[]... states) {
         if (states.length != this.agents.length) {
             throw new ArrayIndexOutOfBoundsException("Num_States != Num_Agents");
         }
-        return IntStream.range(0, this.agents.length).parallel().map(i -> this.agents[i].act(states[i])).toArray();
+        for (int i = 0; i < states.length; i++) {
+            this.agents[i].observe(states[i]);
+        }
+        return this.act();
+    }
+
+    public int[] act(final SparseVector... states) {
+        if (states.length != this.agents.length) {
+            throw new ArrayIndexOutOfBoundsException("Num_States != Num_Agents");
+        }
+        for (int i = 0; i < states.length; i++) {
+            this.agents[i].observe(states[i]);
+        }
+        return this.act();
+    }
+
+    private int[] act() {
+        final int cols = this.agents.length;
+        final int[] actions = new int[cols];
+        if (this.agents[0].isAsync()) {
+            this.parallel.forEach(cols, i -> actions[i] = this.agents[i].act());
+            return actions;
+        }
+
+        final Metrics metrics = this.agents[0].metrics;
+        final long start = metrics.start();
+        final long allocated = metrics.allocated();
+        final Workspace ws = this.actWorkspace;
+        for (int j = 0; j < cols; j++) {
+            this.agents[j].copyCurrentState(ws, j);
+        }
+        final Mat q = this.net.forward(ws, false);
+        for (int j = 0; j < cols; j++) {
+            actions[j] = this.agents[j].act(q.argmax(j));
+        }
+        for (final DQN agent : this.agents) {
+            agent.metrics.record(Stage.ACT, start);
+        }
+        metrics.recordAllocation(allocated);
+        return actions;
     }
 
     public void learn(final double... rewards) {
         if (rewards.length != this.agents.length) {
             throw new ArrayIndexOutOfBoundsException("Num_Rewards != Num_Agents");
         }
-        IntStream.range(0, this.agents.length).parallel().forEach(i -> this.agents[i].learn(rewards[i]));
+        this.parallel.forEach(this.agents.length, i -> this.agents[i].learn(rewards[i]));
+        this.checkpoint();
+    }
+
+    public void learn(final double[] rewards, final boolean[] terminals) {
+        if (rewards.length != this.agents.length || terminals.length != this.agents.length) {
+            throw new ArrayIndexOutOfBoundsException("Num_Rewards != Num_Agents");
+        }
+        this.parallel.forEach(this.agents.length, i -> this.agents[i].learn(rewards[i], terminals[i]));
+        this.checkpoint();
+    }
+
+    private void checkpoint() {
+        this.steps++;
+        if (this.checkpointer != null && this.steps % this.saveInterval == 0) {
+            this.checkpointer.submit(this.agents[0].snapshotNetwork(), this.steps);
+        }
     }
 
     public void saveAgents() {
         this.agents[0].saveModel();
     }
 
+    public void saveAgents(final File file) {
+        this.agents[0].saveModel(file);
+    }
+
+    public void setCheckpointDirectory(final File directory) {
+        if (this.checkpointer != null) {
+            this.checkpointer.setDirectory(directory);
+        }
+    }
+
+    public void loadLatestCheckpoint() {
+        final File latest = this.checkpointer == null ? null : this.checkpointer.latest();
+        if (latest != null && this.readAgents(latest)) {
+            this.steps = this.checkpointer.step(latest);
+        }
+    }
+
     public void loadAgents() {
-        this.agents[0].loadModel();
-        this.W1 = this.agents[0].W1;
-        this.W2 = this.agents[0].W2;
-        this.B1 = this.agents[0].B1;
-        this.B2 = this.agents[0].B2;
-        Arrays.setAll(this.agents, i -> new DQN(this.agents[0].numActions, this.agents[0].numStates, this.config, i, new Mat[]{this.W1, this.W2, this.B1, this.B2}));
+        this.loadAgents(new File("agent.json"));
+    }
+
+    public void loadAgents(final File file) {
+        this.readAgents(file);
+    }
+
+    private boolean readAgents(final File file) {
+        if (!this.agents[0].readModel(file)) {
+            return false;
+        }
+        this.net = this.agents[0].net;
+        this.shutdownAgents();
+        this.createAgents(this.agents[0].numActions, this.agents[0].numStates);
+        if (this.mbeans) {
+            this.registerMBeans();
+        }
+        if (this.logDirectory != null) {
+            try {
+                this.logTransitions(this.logDirectory);
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        this.shutdownAgents();
+        this.parallel.shutdown();
+        if (this.checkpointer != null) {
+            this.checkpointer.shutdown();
+        }
+    }
+
+    private void shutdownAgents() {
+        for (final DQN agent : this.agents) {
+            agent.shutdown();
+        }
+    }
+
+    public void logTransitions(final File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.logDirectory = directory;
+        for (final DQN agent : this.agents) {
+            agent.openTransitionLog(new File(directory, "agent-" + agent.getIndex() + ".log"));
+        }
+    }
+
+    public void closeTransitionLogs() {
+        this.logDirectory = null;
+        for (final DQN agent : this.agents) {
+            agent.closeTransitionLog();
+        }
+    }
+
+    public Policy toPolicy() {
+        return this.agents[0].toPolicy();
+    }
+
+    public QuantizedPolicy toQuantizedPolicy() {
+        return this.agents[0].toQuantizedPolicy();
+    }
+
+    public MetricsSnapshot[] getMetrics() {
+        final MetricsSnapshot[] snapshots = new MetricsSnapshot[this.agents.length];
+        Arrays.setAll(snapshots, i -> this.agents[i].getMetrics());
+        return snapshots;
+    }
+
+    public void resetMetrics() {
+        for (final DQN agent : this.agents) {
+            agent.resetMetrics();
+        }
+    }
+
+    public void registerMBeans() {
+        this.mbeans = true;
+        for (final DQN agent : this.agents) {
+            agent.registerMBean(this.instance);
+        }
     }
 
     public int getNumAgents() {
@@ -60,10 +243,8 @@ public class MultiAgents {
     @Override
     public String toString() {
         return "MultiAgents{" +
-                ", W1=" + this.W1.toString() +
-                ", W2=" + this.W2.toString() +
-                ", B1=" + this.B1.toString() +
-                ", B2=" + this.B2.toString() +
+                ", weights=" + Arrays.toString(this.net.weights) +
+                ", biases=" + Arrays.toString(this.net.biases) +
                 '}';
     }
 }
@@ -0,0 +1,182 @@
+package de.raimannma.reinforce4j;
+
+import net.jafama.FastMath;
+
+import java.util.SplittableRandom;
+
+class Network {
+    final Mat[] weights;
+    final Mat[] biases;
+    final Activation activation;
+
+    Network(final Mat[] weights, final Mat[] biases, final Activation activation) {
+        assert weights.length == biases.length;
+        this.weights = weights;
+        this.biases = biases;
+        this.activation = activation;
+    }
+
+    static Network create(final int[] sizes, final Activation activation, final boolean floatPrecision, final SplittableRandom random) {
+        final int numLayers = sizes.length - 1;
+        final Mat[] weights = new Mat[numLayers];
+        final Mat[] biases = new Mat[numLayers];
+        final double gain = activation == Activation.TANH ? 1 : 2;
+        for (int l = 0; l < numLayers; l++) {
+            weights[l] = DQN.createRandMat(sizes[l + 1], sizes[l], floatPrecision, FastMath.sqrt(gain / sizes[l]), random);
+            biases[l] = new Mat(sizes[l + 1], 1, floatPrecision);
+        }
+        return new Network(weights, biases, activation);
+    }
+
+    static Network fromArray(final Mat[] mats, final Activation activation) {
+        final int numLayers = mats.length / 2;
+        final Mat[] weights = new Mat[numLayers];
+        final Mat[] biases = new Mat[numLayers];
+        System.arraycopy(mats, 0, weights, 0, numLayers);
+        System.arraycopy(mats, numLayers, biases, 0, numLayers);
+        return new Network(weights, biases, activation);
+    }
+
+    Mat[] toArray() {
+        final int numLayers = this.weights.length;
+        final Mat[] mats = new Mat[2 * numLayers];
+        System.arraycopy(this.weights, 0, mats, 0, numLayers);
+        System.arraycopy(this.biases, 0, mats, numLayers, numLayers);
+        return mats;
+    }
+
+    int getNumLayers() {
+        return this.weights.length;
+    }
+
+    int[] getSizes() {
+        final int[] sizes = new int[this.weights.length + 1];
+        sizes[0] = this.weights[0].d;
+        for (int l = 0; l < this.weights.length; l++) {
+            sizes[l + 1] = this.weights[l].n;
+        }
+        return sizes;
+    }
+
+    boolean isFloat() {
+        return this.weights[0].isFloat();
+    }
+
+    Mat forward(final Workspace ws, final boolean needsBackprop) {
+        final Optimizer.Steps steps = this.weights[0].steps;
+        if (steps != null && ws.sparseInput != null) {
+            final int count = ws.sparseInput.collectFeatures();
+            steps.catchUp(this.weights[0], ws.sparseInput.features, count);
+        }
+        final Graph graph = ws.graph;
+        graph.reset(needsBackprop);
+        final int last = this.weights.length - 1;
+        Mat x = ws.input;
+        for (int l = 0; l < last; l++) {
+            final Mat product = this.multiply(graph, ws, l, x);
+            graph.add(product, this.biases[l], ws.sums[l]);
+            x = graph.activate(this.activation, ws.sums[l], ws.activations[l]);
+        }
+        final Mat product = this.multiply(graph, ws, last, x);
+        return graph.add(product, this.biases[last], ws.sums[last]);
+    }
+
+    private Mat multiply(final Graph graph, final Workspace ws, final int l, final Mat x) {
+        if (l > 0) {
+            return graph.mul(this.weights[l], x, ws.products[l]);
+        }
+        if (ws.sparseInput != null) {
+            return graph.mul(this.weights[0], ws.sparseInput, ws.products[0]);
+        }
+        return graph.mulInput(this.weights[0], x, ws.products[0]);
+    }
+
+    void update(final Optimizer optimizer, final GradientReducer reducer, final SparseMat sparseInput) {
+        if (this.weights[0].steps != null) {
+            optimizer.step(this.weights[0].steps.next());
+        }
+        final int numLayers = this.weights.length;
+        for (int l = 0; l < numLayers; l++) {
+            if (l == 0 && sparseInput != null) {
+                final int count = sparseInput.collectFeatures();
+                if (reducer == null) {
+                    optimizer.updateColumns(this.weights[0], sparseInput.features, count);
+                    this.biases[0].update(optimizer);
+                } else {
+                    reducer.applyColumns(0, this.weights[0], optimizer, sparseInput.features, count);
+                    reducer.apply(numLayers, this.biases[0], optimizer);
+                }
+            } else if (reducer == null) {
+                this.weights[l].update(optimizer);
+                this.biases[l].update(optimizer);
+            } else {
+                reducer.apply(l, this.weights[l], optimizer);
+                reducer.apply(numLayers + l, this.biases[l], optimizer);
+            }
+        }
+    }
+
+    Network prepare(final Optimizer optimizer) {
+        for (int l = 0; l < this.weights.length; l++) {
+            this.weights[l].prepare(optimizer.type);
+            this.biases[l].prepare(optimizer.type);
+        }
+        if (optimizer.type != Optimizer.Type.SGD && this.weights[0].steps == null) {
+            this.weights[0].steps = new Optimizer.Steps(optimizer, this.weights[0].d);
+        }
+        return this;
+    }
+
+    void flush() {
+        if (this.weights[0].steps != null) {
+            this.weights[0].steps.flush(this.weights[0]);
+        }
+    }
+
+    Network toPrecision(final boolean floatPrecision) {
+        final Mat[] weights = new Mat[this.weights.length];
+        final Mat[] biases = new Mat[this.biases.length];
+        for (int l = 0; l < weights.length; l++) {
+            weights[l] = this.weights[l].toPrecision(floatPrecision);
+            biases[l] = this.biases[l].toPrecision(floatPrecision);
+        }
+        return new Network(weights, biases, this.activation);
+    }
+
+    Network share() {
+        final Mat[] weights = new Mat[this.weights.length];
+        final Mat[] biases = new Mat[this.biases.length];
+        for (int l = 0; l < weights.length; l++) {
+            weights[l] = this.weights[l].share();
+            biases[l] = this.biases[l].share();
+        }
+        return new Network(weights, biases, this.activation);
+    }
+
+    Network copy() {
+        this.flush();
+        final Mat[] weights = new Mat[this.weights.length];
+        final Mat[] biases = new Mat[this.biases.length];
+        for (int l = 0; l < weights.length; l++) {
+            weights[l] = this.weights[l].copy();
+            biases[l] = this.biases[l].copy();
+        }
+        return new Network(weights, biases, this.activation);
+    }
+
+    void copyFrom(final Network network) {
+        network.flush();
+        for (int l = 0; l < this.weights.length; l++) {
+            this.weights[l].copyFrom(network.weights[l]);
+            this.biases[l].copyFrom(network.biases[l]);
+        }
+    }
+
+    void blend(final Network network, final double tau) {
+        network.flush();
+        for (int l = 0; l < this.weights.length; l++) {
+            this.weights[l].blend(network.weights[l], tau);
+            this.biases[l].blend(network.biases[l], tau);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.raimannma.reinforce4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+public class OfflineTrainer implements Closeable {
+    private final DQN agent;
+    private final TransitionLog log;
+
+    public OfflineTrainer(final DQN agent, final File file) throws IOException {
+        this.agent = agent;
+        this.log = TransitionLog.open(file);
+        if (this.log.numStates != agent.numStates) {
+            this.log.close();
+            throw new IOException("Transition log has " + this.log.numStates + " states, agent has " + agent.numStates);
+        }
+    }
+
+    public long size() {
+        return this.log.size();
+    }
+
+    public void warmStart() throws IOException {
+        final long size = this.log.size();
+        for (long i = Math.max(0, size - this.agent.getReplayCapacity()); i < size; i++) {
+            this.agent.remember(this.log, i);
+        }
+    }
+
+    public void train(final long updates) throws IOException {
+        if (this.log.size() == 0) {
+            return;
+        }
+        for (long i = 0; i < updates; i++) {
+            this.agent.learnOffline(this.log);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.log.close();
+    }
+}
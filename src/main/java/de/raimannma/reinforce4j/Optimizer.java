@@ -0,0 +1,326 @@
+package de.raimannma.reinforce4j;
+
+import net.jafama.FastMath;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class Optimizer {
+    private static final double EPSILON = 1e-8;
+    private static final double CATCH_UP_TOLERANCE = 1e-17;
+
+    final Type type;
+    private final double alpha;
+    private final double momentum;
+    private final double decayRate;
+    private final double clip;
+    private final int horizon;
+    private double stepSize;
+    private double epsilon;
+    private double[] stepSizes;
+    private double[] epsilons;
+
+    Optimizer(final Type type, final double alpha, final double momentum, final double decayRate, final double gradientClip) {
+        this.type = type;
+        this.alpha = alpha;
+        this.momentum = momentum;
+        this.decayRate = decayRate;
+        this.clip = gradientClip > 0 ? gradientClip : Double.POSITIVE_INFINITY;
+        this.stepSize = alpha;
+        this.epsilon = Optimizer.EPSILON;
+        this.horizon = Optimizer.horizon(momentum, decayRate);
+        this.stepSizes = new double[0];
+        this.epsilons = new double[0];
+    }
+
+    static Type toType(final double value) {
+        return Type.values()[DQN.toInteger(value)];
+    }
+
+    void step(final long step) {
+        if (this.type == Type.ADAM) {
+            final double correction = FastMath.sqrt(1 - FastMath.pow(this.decayRate, step));
+            this.stepSize = this.alpha * correction / (1 - FastMath.pow(this.momentum, step));
+            this.epsilon = Optimizer.EPSILON * correction;
+        }
+    }
+
+    void update(final Mat mat, final int start, final int end) {
+        if (mat.isFloat()) {
+            this.update(mat.fw, mat.fdw, mat.fm, mat.fv, start, end, 1);
+        } else {
+            this.update(mat.w, mat.dw, mat.m, mat.v, start, end, 1);
+        }
+    }
+
+    void updateColumns(final Mat mat, final int[] columns, final int count) {
+        if (mat.steps != null) {
+            mat.steps.update(this, mat, columns, count);
+            return;
+        }
+        for (int c = 0; c < count; c++) {
+            this.updateColumn(mat, columns[c]);
+        }
+    }
+
+    private void updateColumn(final Mat mat, final int col) {
+        if (mat.isFloat()) {
+            this.update(mat.fw, mat.fdw, mat.fm, mat.fv, col, mat.size(), mat.d);
+        } else {
+            this.update(mat.w, mat.dw, mat.m, mat.v, col, mat.size(), mat.d);
+        }
+    }
+
+    private void catchUp(final Mat mat, final int col, final long from, final long until) {
+        final long skipped = until - from;
+        if (this.type == Type.ADAM) {
+            final int count = (int) FastMath.min(skipped, this.horizon);
+            this.schedule(from, count);
+            final double rest1 = FastMath.pow(this.momentum, skipped - count);
+            final double rest2 = FastMath.pow(this.decayRate, skipped - count);
+            if (mat.isFloat()) {
+                this.catchUp(mat.fw, mat.fm, mat.fv, col, mat.size(), mat.d, count, (float) rest1, (float) rest2);
+            } else {
+                this.catchUp(mat.w, mat.m, mat.v, col, mat.size(), mat.d, count, rest1, rest2);
+            }
+            return;
+        }
+        final double decay1 = FastMath.pow(this.momentum, skipped);
+        final double decay2 = FastMath.pow(this.decayRate, skipped);
+        final double drift = this.type == Type.MOMENTUM ?
+                this.alpha * (this.momentum == 1 ? skipped : this.momentum * (1 - decay1) / (1 - this.momentum)) :
+                0;
+        if (mat.isFloat()) {
+            this.catchUp(mat.fw, mat.fm, mat.fv, col, mat.size(), mat.d, (float) drift, (float) decay1, (float) decay2);
+        } else {
+            this.catchUp(mat.w, mat.m, mat.v, col, mat.size(), mat.d, drift, decay1, decay2);
+        }
+    }
+
+    private static int horizon(final double beta1, final double beta2) {
+        final double ratio = beta1 / FastMath.sqrt(beta2);
+        if (ratio < 1) {
+            return (int) FastMath.ceil(FastMath.log(Optimizer.CATCH_UP_TOLERANCE) / FastMath.log(ratio));
+        }
+        if (beta1 < 1) {
+            return (int) FastMath.ceil(FastMath.log(Optimizer.CATCH_UP_TOLERANCE * Optimizer.EPSILON) / FastMath.log(beta1));
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private void schedule(final long from, final int count) {
+        if (this.stepSizes.length < count) {
+            this.stepSizes = new double[count];
+            this.epsilons = new double[count];
+        }
+        double pow1 = FastMath.pow(this.momentum, from);
+        double pow2 = FastMath.pow(this.decayRate, from);
+        for (int j = 0; j < count; j++) {
+            pow1 *= this.momentum;
+            pow2 *= this.decayRate;
+            final double correction = FastMath.sqrt(1 - pow2);
+            this.stepSizes[j] = this.alpha * correction / (1 - pow1);
+            this.epsilons[j] = Optimizer.EPSILON * correction;
+        }
+    }
+
+    private void catchUp(final double[] w, final double[] m, final double[] v, final int start, final int end, final int stride,
+                         final int count, final double rest1, final double rest2) {
+        final double beta1 = this.momentum;
+        final double beta2 = this.decayRate;
+        final double[] stepSizes = this.stepSizes;
+        final double[] epsilons = this.epsilons;
+        for (int i = start; i < end; i += stride) {
+            double wi = w[i];
+            double mi = m[i];
+            double vi = v[i];
+            for (int j = 0; j < count; j++) {
+                mi *= beta1;
+                vi *= beta2;
+                wi -= stepSizes[j] * mi / (FastMath.sqrt(vi) + epsilons[j]);
+            }
+            w[i] = wi;
+            m[i] = mi * rest1;
+            v[i] = vi * rest2;
+        }
+    }
+
+    private void catchUp(final float[] w, final float[] m, final float[] v, final int start, final int end, final int stride,
+                         final int count, final float rest1, final float rest2) {
+        final float beta1 = (float) this.momentum;
+        final float beta2 = (float) this.decayRate;
+        final double[] stepSizes = this.stepSizes;
+        final double[] epsilons = this.epsilons;
+        for (int i = start; i < end; i += stride) {
+            float wi = w[i];
+            float mi = m[i];
+            float vi = v[i];
+            for (int j = 0; j < count; j++) {
+                mi *= beta1;
+                vi *= beta2;
+                wi -= (float) stepSizes[j] * mi / ((float) FastMath.sqrt(vi) + (float) epsilons[j]);
+            }
+            w[i] = wi;
+            m[i] = mi * rest1;
+            v[i] = vi * rest2;
+        }
+    }
+
+    private void catchUp(final double[] w, final double[] m, final double[] v, final int start, final int end, final int stride,
+                         final double drift, final double decay1, final double decay2) {
+        if (this.type == Type.MOMENTUM) {
+            for (int i = start; i < end; i += stride) {
+                w[i] -= drift * m[i];
+                m[i] *= decay1;
+            }
+        } else {
+            for (int i = start; i < end; i += stride) {
+                v[i] *= decay2;
+            }
+        }
+    }
+
+    private void catchUp(final float[] w, final float[] m, final float[] v, final int start, final int end, final int stride,
+                         final float drift, final float decay1, final float decay2) {
+        if (this.type == Type.MOMENTUM) {
+            for (int i = start; i < end; i += stride) {
+                w[i] -= drift * m[i];
+                m[i] *= decay1;
+            }
+        } else {
+            for (int i = start; i < end; i += stride) {
+                v[i] *= decay2;
+            }
+        }
+    }
+
+    private void update(final double[] w, final double[] dw, final double[] m, final double[] v, final int start, final int end, final int stride) {
+        final double clip = this.clip;
+        final double alpha = this.alpha;
+        if (this.type == Type.SGD) {
+            for (int i = start; i < end; i += stride) {
+                final double g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                w[i] -= alpha * g;
+                dw[i] = 0;
+            }
+        } else if (this.type == Type.MOMENTUM) {
+            final double mu = this.momentum;
+            for (int i = start; i < end; i += stride) {
+                final double g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                m[i] = mu * m[i] + g;
+                w[i] -= alpha * m[i];
+                dw[i] = 0;
+            }
+        } else if (this.type == Type.RMSPROP) {
+            final double rho = this.decayRate;
+            final double eps = this.epsilon;
+            for (int i = start; i < end; i += stride) {
+                final double g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                v[i] = rho * v[i] + (1 - rho) * g * g;
+                w[i] -= alpha * g / (FastMath.sqrt(v[i]) + eps);
+                dw[i] = 0;
+            }
+        } else {
+            final double beta1 = this.momentum;
+            final double beta2 = this.decayRate;
+            final double stepSize = this.stepSize;
+            final double eps = this.epsilon;
+            for (int i = start; i < end; i += stride) {
+                final double g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                m[i] = beta1 * m[i] + (1 - beta1) * g;
+                v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+                w[i] -= stepSize * m[i] / (FastMath.sqrt(v[i]) + eps);
+                dw[i] = 0;
+            }
+        }
+    }
+
+    private void update(final float[] w, final float[] dw, final float[] m, final float[] v, final int start, final int end, final int stride) {
+        final float clip = (float) this.clip;
+        final float alpha = (float) this.alpha;
+        if (this.type == Type.SGD) {
+            for (int i = start; i < end; i += stride) {
+                final float g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                w[i] -= alpha * g;
+                dw[i] = 0;
+            }
+        } else if (this.type == Type.MOMENTUM) {
+            final float mu = (float) this.momentum;
+            for (int i = start; i < end; i += stride) {
+                final float g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                m[i] = mu * m[i] + g;
+                w[i] -= alpha * m[i];
+                dw[i] = 0;
+            }
+        } else if (this.type == Type.RMSPROP) {
+            final float rho = (float) this.decayRate;
+            final float eps = (float) this.epsilon;
+            for (int i = start; i < end; i += stride) {
+                final float g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                v[i] = rho * v[i] + (1 - rho) * g * g;
+                w[i] -= alpha * g / ((float) FastMath.sqrt(v[i]) + eps);
+                dw[i] = 0;
+            }
+        } else {
+            final float beta1 = (float) this.momentum;
+            final float beta2 = (float) this.decayRate;
+            final float stepSize = (float) this.stepSize;
+            final float eps = (float) this.epsilon;
+            for (int i = start; i < end; i += stride) {
+                final float g = FastMath.max(-clip, FastMath.min(clip, dw[i]));
+                m[i] = beta1 * m[i] + (1 - beta1) * g;
+                v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+                w[i] -= stepSize * m[i] / ((float) FastMath.sqrt(v[i]) + eps);
+                dw[i] = 0;
+            }
+        }
+    }
+
+    static final class Steps {
+        private final Optimizer optimizer;
+        private final long[] last;
+        private final AtomicLong updates = new AtomicLong();
+        private long clock;
+
+        Steps(final Optimizer optimizer, final int columns) {
+            this.optimizer = optimizer;
+            this.last = new long[columns];
+        }
+
+        long next() {
+            return this.updates.incrementAndGet();
+        }
+
+        synchronized void catchUp(final Mat mat, final int[] columns, final int count) {
+            for (int c = 0; c < count; c++) {
+                this.catchUp(mat, columns[c]);
+            }
+        }
+
+        synchronized void flush(final Mat mat) {
+            for (int col = 0; col < this.last.length; col++) {
+                this.catchUp(mat, col);
+            }
+        }
+
+        private synchronized void update(final Optimizer optimizer, final Mat mat, final int[] columns, final int count) {
+            this.catchUp(mat, columns, count);
+            this.clock++;
+            for (int c = 0; c < count; c++) {
+                optimizer.updateColumn(mat, columns[c]);
+                this.last[columns[c]] = this.clock;
+            }
+        }
+
+        private void catchUp(final Mat mat, final int col) {
+            final long from = this.last[col];
+            if (from < this.clock) {
+                this.optimizer.catchUp(mat, col, from, this.clock);
+                this.last[col] = this.clock;
+            }
+        }
+    }
+
+    enum Type {
+        SGD, MOMENTUM, RMSPROP, ADAM
+    }
+}
@@ -1,5 +1,5 @@
 package de.raimannma.reinforce4j;
 
 public enum Option {
-    GAMMA, EPSILON, ALPHA, EXPERIENCE_ADD_EVERY, EXPERIENCE_SIZE, LEARNING_STEPS_PER_ITERATION, TD_ERROR_CLAMP, SAVE_INTERVAL, NUM_HIDDEN_UNITS
+    GAMMA, EPSILON, ALPHA, EXPERIENCE_ADD_EVERY, EXPERIENCE_SIZE, LEARNING_STEPS_PER_ITERATION, TD_ERROR_CLAMP, SAVE_INTERVAL, NUM_HIDDEN_UNITS, BATCH_SIZE, EXPERIENCE_FLOAT_PRECISION, PRIORITY_ALPHA, PRIORITY_BETA, HOGWILD, ASYNC_LEARNING, ASYNC_QUEUE_SIZE, SNAPSHOT_INTERVAL, FLOAT_PRECISION, TARGET_UPDATE_INTERVAL, TARGET_SOFT_UPDATE, TARGET_CACHE, OPTIMIZER, MOMENTUM, DECAY_RATE, GRADIENT_CLIP, NUM_HIDDEN_LAYERS, ACTIVATION, PARALLELISM, PARALLEL_THRESHOLD, METRICS, CHECKPOINT_KEEP, SEED, SPARSE_CAPACITY, SERVER_PORT, SERVER_MAX_BATCH, SERVER_BATCH_WINDOW
 }
@@ -0,0 +1,104 @@
+package de.raimannma.reinforce4j;
+
+import net.jafama.FastMath;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+class Parallel {
+    static final Parallel SEQUENTIAL = new Parallel(1, Long.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final long threshold;
+
+    Parallel(final int parallelism, final long threshold) {
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism, Parallel::newThread, null, false) : null;
+        this.threshold = FastMath.max(1, threshold);
+    }
+
+    static Parallel create(final Map<Option, Double> config) {
+        final int parallelism = DQN.toInteger(config.getOrDefault(Option.PARALLELISM, (double) Runtime.getRuntime().availableProcessors()));
+        final long threshold = (long) (double) config.getOrDefault(Option.PARALLEL_THRESHOLD, 65536.0);
+        return parallelism > 1 ? new Parallel(parallelism, threshold) : Parallel.SEQUENTIAL;
+    }
+
+    private static ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("reinforce4j-worker-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    boolean isParallel(final int count, final long costPerItem) {
+        return this.pool != null && count > 1 && count * costPerItem >= this.threshold;
+    }
+
+    void forRange(final int start, final int end, final long costPerItem, final RangeTask task) {
+        final int count = end - start;
+        if (!this.isParallel(count, costPerItem)) {
+            task.run(start, end);
+            return;
+        }
+        final long chunksByWork = count * costPerItem / this.threshold;
+        final int chunks = (int) FastMath.min(FastMath.min(count, 4L * this.pool.getParallelism()), chunksByWork);
+        final RecursiveAction[] actions = new RecursiveAction[chunks];
+        for (int c = 0; c < chunks; c++) {
+            final int from = start + (int) ((long) count * c / chunks);
+            final int to = start + (int) ((long) count * (c + 1) / chunks);
+            actions[c] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    task.run(from, to);
+                }
+            };
+        }
+        this.invokeAll(actions);
+    }
+
+    void forEach(final int count, final IntConsumer task) {
+        if (this.pool == null || count < 2) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        final RecursiveAction[] actions = new RecursiveAction[count];
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            actions[i] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    task.accept(index);
+                }
+            };
+        }
+        this.invokeAll(actions);
+    }
+
+    private void invokeAll(final RecursiveAction[] actions) {
+        if (ForkJoinTask.getPool() == this.pool) {
+            ForkJoinTask.invokeAll(actions);
+            return;
+        }
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(actions);
+            }
+        });
+    }
+
+    void shutdown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    interface RangeTask {
+        void run(int start, int end);
+    }
+}
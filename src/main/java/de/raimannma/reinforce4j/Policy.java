@@ -0,0 +1,124 @@
+package de.raimannma.reinforce4j;
+
+import net.jafama.FastMath;
+
+public final class Policy {
+    private final double[][] weights;
+    private final double[][] biases;
+    private final int[] sizes;
+    private final Activation activation;
+    private final int maxWidth;
+    private final ThreadLocal<double[]> buffers;
+
+    Policy(final Network net) {
+        final int numLayers = net.getNumLayers();
+        this.sizes = net.getSizes();
+        this.activation = net.activation;
+        this.weights = new double[numLayers][];
+        this.biases = new double[numLayers][];
+        int maxWidth = 0;
+        for (int l = 0; l < numLayers; l++) {
+            this.weights[l] = Policy.toArray(net.weights[l]);
+            this.biases[l] = Policy.toArray(net.biases[l]);
+            maxWidth = FastMath.max(maxWidth, this.sizes[l + 1]);
+        }
+        this.maxWidth = maxWidth;
+        this.buffers = ThreadLocal.withInitial(this::newBuffer);
+    }
+
+    private static double[] toArray(final Mat mat) {
+        final double[] arr = new double[mat.size()];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = mat.get(i);
+        }
+        return arr;
+    }
+
+    public int getNumStates() {
+        return this.sizes[0];
+    }
+
+    public int getNumActions() {
+        return this.sizes[this.sizes.length - 1];
+    }
+
+    public double[] newBuffer() {
+        return new double[2 * this.maxWidth];
+    }
+
+    public int act(final double[] state) {
+        return this.act(state, this.buffers.get());
+    }
+
+    public int act(final double[] state, final double[] buffer) {
+        final int offset = this.forward(state, buffer);
+        final int numActions = this.getNumActions();
+        int maxIndex = 0;
+        double maxVal = buffer[offset];
+        for (int i = 1; i < numActions; i++) {
+            if (buffer[offset + i] > maxVal) {
+                maxIndex = i;
+                maxVal = buffer[offset + i];
+            }
+        }
+        return maxIndex;
+    }
+
+    public void qValues(final double[] state, final double[] out) {
+        this.qValues(state, out, this.buffers.get());
+    }
+
+    public void qValues(final double[] state, final double[] out, final double[] buffer) {
+        final int offset = this.forward(state, buffer);
+        System.arraycopy(buffer, offset, out, 0, this.getNumActions());
+    }
+
+    private int forward(final double[] state, final double[] buffer) {
+        if (state.length < this.sizes[0]) {
+            throw new ArrayIndexOutOfBoundsException("Num_States != " + this.sizes[0]);
+        }
+        final int last = this.weights.length - 1;
+        double[] src = state;
+        int srcOffset = 0;
+        int dstOffset = 0;
+        for (int l = 0; l <= last; l++) {
+            Policy.layer(this.weights[l], this.biases[l], src, srcOffset, buffer, dstOffset, this.sizes[l + 1], this.sizes[l],
+                    l < last ? this.activation : null);
+            src = buffer;
+            srcOffset = dstOffset;
+            dstOffset = this.maxWidth - dstOffset;
+        }
+        return srcOffset;
+    }
+
+    private static void layer(final double[] w, final double[] b, final double[] x, final int xOffset, final double[] out, final int outOffset,
+                              final int n, final int m, final Activation activation) {
+        for (int i = 0; i < n; i++) {
+            final int wi = i * m;
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            int k = 0;
+            for (; k + 3 < m; k += 4) {
+                s0 += w[wi + k] * x[xOffset + k];
+                s1 += w[wi + k + 1] * x[xOffset + k + 1];
+                s2 += w[wi + k + 2] * x[xOffset + k + 2];
+                s3 += w[wi + k + 3] * x[xOffset + k + 3];
+            }
+            for (; k < m; k++) {
+                s0 += w[wi + k] * x[xOffset + k];
+            }
+            final double sum = (s0 + s1) + (s2 + s3) + b[i];
+            if (activation == null) {
+                out[outOffset + i] = sum;
+            } else if (activation == Activation.TANH) {
+                out[outOffset + i] = FastMath.tanh(sum);
+            } else if (activation == Activation.RELU) {
+                out[outOffset + i] = sum > 0 ? sum : 0;
+            } else {
+                out[outOffset + i] = sum > 0 ? sum : Graph.LEAKY_SLOPE * sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package de.raimannma.reinforce4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+public class PolicyClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int numStates;
+    private final int numActions;
+
+    public PolicyClient(final int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+        this.numStates = this.in.readInt();
+        this.numActions = this.in.readInt();
+    }
+
+    public int getNumStates() {
+        return this.numStates;
+    }
+
+    public int getNumActions() {
+        return this.numActions;
+    }
+
+    public int act(final double[] state) throws IOException {
+        if (state.length < this.numStates) {
+            throw new ArrayIndexOutOfBoundsException("Num_States != " + this.numStates);
+        }
+        for (int i = 0; i < this.numStates; i++) {
+            this.out.writeDouble(state[i]);
+        }
+        this.out.flush();
+        final int action = this.in.readInt();
+        if (action < 0) {
+            throw new IOException("Policy server failed to evaluate state");
+        }
+        return action;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+}
@@ -0,0 +1,267 @@
+package de.raimannma.reinforce4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class PolicyServer implements Closeable {
+    private final int[] sizes;
+    private final boolean floatPrecision;
+    private final int maxBatch;
+    private final long batchWindow;
+    private final Parallel parallel;
+    private final Workspace[] workspaces;
+    private final Request[] batch;
+    private final LinkedBlockingQueue<Request> requests;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections;
+    private final ExecutorService connectionExecutor;
+    private final Thread acceptThread;
+    private final Thread batchThread;
+    private volatile Network net;
+    private volatile boolean closed;
+    private ScheduledExecutorService watcher;
+    private File loaded;
+    private long loadedModified;
+    private long loadedLength;
+
+    public PolicyServer(final DQN agent, final Map<Option, Double> config) throws IOException {
+        this(agent.snapshotNetwork(), config);
+    }
+
+    public PolicyServer(final File checkpoint, final Map<Option, Double> config) throws IOException {
+        this(Checkpoint.read(checkpoint, DQN.toActivation(config)), config);
+        this.loaded = checkpoint;
+        this.loadedModified = checkpoint.lastModified();
+        this.loadedLength = checkpoint.length();
+    }
+
+    private PolicyServer(final Network net, final Map<Option, Double> config) throws IOException {
+        this.net = net;
+        this.sizes = net.getSizes();
+        this.floatPrecision = net.isFloat();
+        this.maxBatch = Math.max(1, DQN.toInteger(config.getOrDefault(Option.SERVER_MAX_BATCH, 64.0)));
+        this.batchWindow = TimeUnit.MICROSECONDS.toNanos(DQN.toInteger(config.getOrDefault(Option.SERVER_BATCH_WINDOW, 200.0)));
+        this.parallel = Parallel.create(config);
+        this.workspaces = new Workspace[33 - Integer.numberOfLeadingZeros(this.maxBatch - 1)];
+        this.batch = new Request[this.maxBatch];
+        this.requests = new LinkedBlockingQueue<>();
+        this.connections = ConcurrentHashMap.newKeySet();
+
+        final int port = DQN.toInteger(config.getOrDefault(Option.SERVER_PORT, 0.0));
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.connectionExecutor = Executors.newCachedThreadPool(runnable -> PolicyServer.newThread(runnable, "reinforce4j-server-connection"));
+        this.batchThread = PolicyServer.newThread(this::batchLoop, "reinforce4j-server-batch");
+        this.acceptThread = PolicyServer.newThread(this::acceptLoop, "reinforce4j-server-accept");
+        this.batchThread.start();
+        this.acceptThread.start();
+    }
+
+    private static Thread newThread(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    public void reload(final DQN agent) throws IOException {
+        this.setNetwork(agent.snapshotNetwork());
+    }
+
+    public void reload(final File checkpoint) throws IOException {
+        this.setNetwork(Checkpoint.read(checkpoint, this.net.activation));
+        synchronized (this) {
+            this.loaded = checkpoint;
+            this.loadedModified = checkpoint.lastModified();
+            this.loadedLength = checkpoint.length();
+        }
+    }
+
+    private void setNetwork(final Network net) throws IOException {
+        if (!Arrays.equals(net.getSizes(), this.sizes)) {
+            throw new IOException("Model sizes " + Arrays.toString(net.getSizes()) + " != " + Arrays.toString(this.sizes));
+        }
+        this.net = net.isFloat() == this.floatPrecision ? net : net.toPrecision(this.floatPrecision);
+    }
+
+    public synchronized void watchCheckpoints(final File directory, final String prefix, final long intervalMillis) {
+        if (this.watcher != null) {
+            this.watcher.shutdownNow();
+        }
+        this.watcher = Executors.newSingleThreadScheduledExecutor(runnable -> PolicyServer.newThread(runnable, "reinforce4j-server-watch"));
+        this.watcher.scheduleWithFixedDelay(() -> this.reloadLatest(directory, prefix), 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reloadLatest(final File directory, final String prefix) {
+        final File latest = Checkpointer.latest(directory, prefix);
+        if (latest == null) {
+            return;
+        }
+        synchronized (this) {
+            if (latest.equals(this.loaded) && latest.lastModified() == this.loadedModified && latest.length() == this.loadedLength) {
+                return;
+            }
+        }
+        try {
+            this.reload(latest);
+        } catch (final IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!this.closed) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.add(socket);
+                this.connectionExecutor.execute(() -> this.serve(socket));
+            } catch (final IOException e) {
+                if (!this.closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(final Socket socket) {
+        final int numStates = this.sizes[0];
+        final Request request = new Request(Thread.currentThread(), numStates);
+        try (socket) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(numStates);
+            out.writeInt(this.sizes[this.sizes.length - 1]);
+            out.flush();
+            while (!this.closed) {
+                for (int i = 0; i < numStates; i++) {
+                    request.state[i] = in.readDouble();
+                }
+                request.action = Request.PENDING;
+                this.requests.add(request);
+                while (request.action == Request.PENDING && !this.closed) {
+                    LockSupport.park(this);
+                }
+                out.writeInt(request.action);
+                out.flush();
+            }
+        } catch (final EOFException | SocketException e) {
+            // client disconnected
+        } catch (final IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.connections.remove(socket);
+        }
+    }
+
+    private void batchLoop() {
+        while (!this.closed) {
+            try {
+                final int count = this.collect();
+                this.evaluate(count);
+            } catch (final InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private int collect() throws InterruptedException {
+        this.batch[0] = this.requests.take();
+        int count = 1;
+        Request request;
+        while (count < this.maxBatch && (request = this.requests.poll()) != null) {
+            this.batch[count++] = request;
+        }
+        final long deadline = System.nanoTime() + this.batchWindow;
+        while (count < this.maxBatch && count < this.connections.size()) {
+            request = this.requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (request == null) {
+                break;
+            }
+            this.batch[count++] = request;
+        }
+        return count;
+    }
+
+    private void evaluate(final int count) {
+        final int bucket = 32 - Integer.numberOfLeadingZeros(count - 1);
+        if (this.workspaces[bucket] == null) {
+            this.workspaces[bucket] = new Workspace(this.sizes, Math.min(1 << bucket, this.maxBatch), this.floatPrecision, this.parallel);
+        }
+        final Workspace ws = this.workspaces[bucket];
+        final Network net = this.net;
+        try {
+            for (int j = 0; j < count; j++) {
+                ws.setColumn(j, this.batch[j].state);
+            }
+            final Mat q = net.forward(ws, false);
+            for (int j = 0; j < count; j++) {
+                this.batch[j].complete(q.argmax(j));
+            }
+        } catch (final RuntimeException e) {
+            e.printStackTrace();
+            for (int j = 0; j < count; j++) {
+                this.batch[j].complete(Request.FAILED);
+            }
+        }
+        Arrays.fill(this.batch, 0, count, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        synchronized (this) {
+            if (this.watcher != null) {
+                this.watcher.shutdownNow();
+            }
+        }
+        this.serverSocket.close();
+        for (final Socket socket : this.connections) {
+            socket.close();
+        }
+        this.batchThread.interrupt();
+        this.connectionExecutor.shutdownNow();
+        this.parallel.shutdown();
+    }
+
+    private static final class Request {
+        static final int PENDING = -2;
+        static final int FAILED = -1;
+
+        final Thread owner;
+        final double[] state;
+        volatile int action;
+
+        Request(final Thread owner, final int numStates) {
+            this.owner = owner;
+            this.state = new double[numStates];
+        }
+
+        void complete(final int action) {
+            this.action = action;
+            LockSupport.unpark(this.owner);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package de.raimannma.reinforce4j;
+
+import net.jafama.FastMath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public final class QuantizedPolicy {
+    private static final int MAGIC = 0x38513452;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOPE_SIZE = 8;
+    private static final int LEVELS = 127;
+
+    private final byte[][] weights;
+    private final float[][] scales;
+    private final float[][] biases;
+    private final int[] sizes;
+    private final Activation activation;
+    private final int maxWidth;
+    private final ThreadLocal<Buffer> buffers;
+
+    QuantizedPolicy(final Network net) {
+        this(net.getSizes(), net.activation);
+        for (int l = 0; l < this.weights.length; l++) {
+            final Mat w = net.weights[l];
+            final int m = this.sizes[l];
+            for (int i = 0; i < w.n; i++) {
+                double max = 0;
+                for (int k = 0; k < m; k++) {
+                    max = FastMath.max(max, FastMath.abs(w.get(i * m + k)));
+                }
+                this.scales[l][i] = (float) (max / QuantizedPolicy.LEVELS);
+                if (max == 0) {
+                    continue;
+                }
+                final double inv = QuantizedPolicy.LEVELS / max;
+                for (int k = 0; k < m; k++) {
+                    this.weights[l][i * m + k] = (byte) FastMath.round(w.get(i * m + k) * inv);
+                }
+            }
+            final Mat b = net.biases[l];
+            for (int i = 0; i < b.size(); i++) {
+                this.biases[l][i] = (float) b.get(i);
+            }
+        }
+    }
+
+    private QuantizedPolicy(final int[] sizes, final Activation activation) {
+        final int numLayers = sizes.length - 1;
+        this.sizes = sizes;
+        this.activation = activation;
+        this.weights = new byte[numLayers][];
+        this.scales = new float[numLayers][];
+        this.biases = new float[numLayers][];
+        int maxWidth = 0;
+        for (int l = 0; l < numLayers; l++) {
+            this.weights[l] = new byte[sizes[l + 1] * sizes[l]];
+            this.scales[l] = new float[sizes[l + 1]];
+            this.biases[l] = new float[sizes[l + 1]];
+            maxWidth = FastMath.max(maxWidth, FastMath.max(sizes[l], sizes[l + 1]));
+        }
+        this.maxWidth = maxWidth;
+        this.buffers = ThreadLocal.withInitial(() -> new Buffer(this.maxWidth));
+    }
+
+    public static QuantizedPolicy load(final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < QuantizedPolicy.HEADER_SIZE || buffer.getInt() != QuantizedPolicy.MAGIC) {
+                throw new IOException("Not a reinforce4j quantized policy: " + file);
+            }
+            final int version = buffer.getInt();
+            if (version < 1 || version > QuantizedPolicy.VERSION) {
+                throw new IOException("Unsupported quantized policy version " + version + ": " + file);
+            }
+            final int count = buffer.getInt();
+            final int ordinal = buffer.getInt();
+            final int slopeSize = version == 1 ? 0 : QuantizedPolicy.SLOPE_SIZE;
+            if (count < 2 || buffer.remaining() < slopeSize + 4L * count) {
+                throw new IOException("Corrupt quantized policy header: " + file);
+            }
+            final double leakySlope = version == 1 ? Graph.LEAKY_SLOPE : buffer.getDouble();
+            final Activation activation = Checkpoint.toActivation(ordinal, leakySlope, file.toString());
+            final int[] sizes = new int[count];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = buffer.getInt();
+            }
+
+            final QuantizedPolicy policy = new QuantizedPolicy(sizes, activation);
+            for (int l = 0; l < policy.weights.length; l++) {
+                buffer.asFloatBuffer().get(policy.scales[l]);
+                buffer.position(buffer.position() + 4 * policy.scales[l].length);
+                buffer.asFloatBuffer().get(policy.biases[l]);
+                buffer.position(buffer.position() + 4 * policy.biases[l].length);
+                buffer.get(policy.weights[l]);
+            }
+            return policy;
+        }
+    }
+
+    public void save(final File file) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(QuantizedPolicy.HEADER_SIZE + QuantizedPolicy.SLOPE_SIZE + 4 * this.sizes.length + (int) this.sizeInBytes())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(QuantizedPolicy.MAGIC).putInt(QuantizedPolicy.VERSION).putInt(this.sizes.length).putInt(this.activation.ordinal());
+        data.putDouble(Graph.LEAKY_SLOPE);
+        for (final int size : this.sizes) {
+            data.putInt(size);
+        }
+        for (int l = 0; l < this.weights.length; l++) {
+            for (final float scale : this.scales[l]) {
+                data.putFloat(scale);
+            }
+            for (final float bias : this.biases[l]) {
+                data.putFloat(bias);
+            }
+            data.put(this.weights[l]);
+        }
+        data.flip();
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+    }
+
+    public long sizeInBytes() {
+        long size = 0;
+        for (int l = 0; l < this.weights.length; l++) {
+            size += this.weights[l].length + 4L * (this.scales[l].length + this.biases[l].length);
+        }
+        return size;
+    }
+
+    public int getNumStates() {
+        return this.sizes[0];
+    }
+
+    public int getNumActions() {
+        return this.sizes[this.sizes.length - 1];
+    }
+
+    public int act(final double[] state) {
+        final Buffer buffer = this.buffers.get();
+        final int offset = this.forward(state, buffer);
+        final double[] out = buffer.values;
+        final int numActions = this.getNumActions();
+        int maxIndex = 0;
+        double maxVal = out[offset];
+        for (int i = 1; i < numActions; i++) {
+            if (out[offset + i] > maxVal) {
+                maxIndex = i;
+                maxVal = out[offset + i];
+            }
+        }
+        return maxIndex;
+    }
+
+    public void qValues(final double[] state, final double[] out) {
+        final Buffer buffer = this.buffers.get();
+        final int offset = this.forward(state, buffer);
+        System.arraycopy(buffer.values, offset, out, 0, this.getNumActions());
+    }
+
+    public double agreement(final Policy reference, final double[][] states) {
+        if (reference.getNumStates() != this.getNumStates() || reference.getNumActions() != this.getNumActions()) {
+            throw new ArrayIndexOutOfBoundsException("Policy sizes differ");
+        }
+        if (states.length == 0) {
+            return 1;
+        }
+        int agreed = 0;
+        for (final double[] state : states) {
+            if (reference.act(state) == this.act(state)) {
+                agreed++;
+            }
+        }
+        return (double) agreed / states.length;
+    }
+
+    private int forward(final double[] state, final Buffer buffer) {
+        if (state.length < this.sizes[0]) {
+            throw new ArrayIndexOutOfBoundsException("Num_States != " + this.sizes[0]);
+        }
+        final int last = this.weights.length - 1;
+        double[] src = state;
+        int srcOffset = 0;
+        int dstOffset = 0;
+        for (int l = 0; l <= last; l++) {
+            final double inputScale = QuantizedPolicy.quantize(src, srcOffset, this.sizes[l], buffer.quantized);
+            QuantizedPolicy.layer(this.weights[l], this.scales[l], this.biases[l], buffer.quantized, inputScale,
+                    buffer.values, dstOffset, this.sizes[l + 1], this.sizes[l], l < last ? this.activation : null);
+            src = buffer.values;
+            srcOffset = dstOffset;
+            dstOffset = this.maxWidth - dstOffset;
+        }
+        return srcOffset;
+    }
+
+    private static double quantize(final double[] x, final int offset, final int m, final byte[] out) {
+        double max = 0;
+        for (int k = 0; k < m; k++) {
+            max = FastMath.max(max, FastMath.abs(x[offset + k]));
+        }
+        if (max == 0) {
+            for (int k = 0; k < m; k++) {
+                out[k] = 0;
+            }
+            return 0;
+        }
+        final double inv = QuantizedPolicy.LEVELS / max;
+        for (int k = 0; k < m; k++) {
+            out[k] = (byte) FastMath.round(x[offset + k] * inv);
+        }
+        return max / QuantizedPolicy.LEVELS;
+    }
+
+    private static void layer(final byte[] w, final float[] scales, final float[] b, final byte[] x, final double inputScale,
+                              final double[] out, final int outOffset, final int n, final int m, final Activation activation) {
+        for (int i = 0; i < n; i++) {
+            final int wi = i * m;
+            int acc = 0;
+            for (int k = 0; k < m; k++) {
+                acc += w[wi + k] * x[k];
+            }
+            final double sum = acc * (scales[i] * inputScale) + b[i];
+            if (activation == null) {
+                out[outOffset + i] = sum;
+            } else if (activation == Activation.TANH) {
+                out[outOffset + i] = FastMath.tanh(sum);
+            } else if (activation == Activation.RELU) {
+                out[outOffset + i] = sum > 0 ? sum : 0;
+            } else {
+                out[outOffset + i] = sum > 0 ? sum : Graph.LEAKY_SLOPE * sum;
+            }
+        }
+    }
+
+    private static final class Buffer {
+        final double[] values;
+        final byte[] quantized;
+
+        Buffer(final int maxWidth) {
+            this.values = new double[2 * maxWidth];
+            this.quantized = new byte[maxWidth];
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package de.raimannma.reinforce4j;
+
+import java.util.SplittableRandom;
+
+class ReplayBuffer {
+    private static final double PRIORITY_EPSILON = 1e-6;
+
+    final int capacity;
+    final int numStates;
+    private final StateStore states;
+    private final StateStore nextStates;
+    private final int[] actions;
+    private final double[] rewards;
+    private final boolean[] terminals;
+    private final double[] tdErrors;
+    private final SumTree priorities;
+    private final double priorityAlpha;
+    private final double priorityBeta;
+    private double maxPriority;
+    private int index;
+    private int size;
+
+    ReplayBuffer(final int capacity, final int numStates, final boolean floatPrecision) {
+        this(capacity, numStates, floatPrecision, 0, 0, 0);
+    }
+
+    ReplayBuffer(final int capacity, final int numStates, final boolean floatPrecision, final int sparseCapacity) {
+        this(capacity, numStates, floatPrecision, sparseCapacity, 0, 0);
+    }
+
+    ReplayBuffer(final int capacity, final int numStates, final boolean floatPrecision, final int sparseCapacity, final double priorityAlpha, final double priorityBeta) {
+        this.capacity = capacity;
+        this.numStates = numStates;
+        this.states = new StateStore(capacity, numStates, floatPrecision, sparseCapacity);
+        this.nextStates = new StateStore(capacity, numStates, floatPrecision, sparseCapacity);
+        this.actions = new int[capacity];
+        this.rewards = new double[capacity];
+        this.terminals = new boolean[capacity];
+        this.tdErrors = new double[capacity];
+        this.priorities = priorityAlpha > 0 ? new SumTree(capacity) : null;
+        this.priorityAlpha = priorityAlpha;
+        this.priorityBeta = priorityBeta;
+        this.maxPriority = 1;
+        this.index = 0;
+        this.size = 0;
+    }
+
+    int add(final double[] state, final int action, final double reward, final double[] nextState, final boolean terminal) {
+        final int slot = this.index;
+        this.states.set(slot, state);
+        this.nextStates.set(slot, nextState);
+        return this.add(action, reward, terminal);
+    }
+
+    int add(final SparseVector state, final int action, final double reward, final SparseVector nextState, final boolean terminal) {
+        final int slot = this.index;
+        this.states.set(slot, state);
+        this.nextStates.set(slot, nextState);
+        return this.add(action, reward, terminal);
+    }
+
+    int add(final ReplayBuffer src, final int srcSlot) {
+        final int slot = this.index;
+        this.states.set(slot, src.states, srcSlot);
+        this.nextStates.set(slot, src.nextStates, srcSlot);
+        return this.add(src.actions[srcSlot], src.rewards[srcSlot], src.terminals[srcSlot]);
+    }
+
+    private int add(final int action, final double reward, final boolean terminal) {
+        final int slot = this.index;
+        this.actions[slot] = action;
+        this.rewards[slot] = reward;
+        this.terminals[slot] = terminal;
+        this.tdErrors[slot] = 0;
+        if (this.priorities != null) {
+            this.priorities.set(slot, this.maxPriority);
+        }
+
+        this.index++;
+        if (this.index == this.capacity) {
+            this.index = 0;
+        }
+        if (this.size < this.capacity) {
+            this.size++;
+        }
+        return slot;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int sample(final SplittableRandom rand) {
+        if (this.priorities == null) {
+            return rand.nextInt(this.size);
+        }
+        final int slot = this.priorities.find(rand.nextDouble() * this.priorities.total());
+        return Math.min(slot, this.size - 1);
+    }
+
+    double getImportanceWeight(final int slot) {
+        if (this.priorities == null) {
+            return 1;
+        }
+        return Math.pow(this.priorities.get(slot) / this.priorities.min(), -this.priorityBeta);
+    }
+
+    void copyState(final int slot, final Workspace dst, final int col) {
+        this.states.copy(slot, dst, col);
+    }
+
+    void copyNextState(final int slot, final Workspace dst, final int col) {
+        this.nextStates.copy(slot, dst, col);
+    }
+
+    int getAction(final int slot) {
+        return this.actions[slot];
+    }
+
+    double getReward(final int slot) {
+        return this.rewards[slot];
+    }
+
+    boolean isTerminal(final int slot) {
+        return this.terminals[slot];
+    }
+
+    double getTdError(final int slot) {
+        return this.tdErrors[slot];
+    }
+
+    void setTdError(final int slot, final double tdError) {
+        this.tdErrors[slot] = tdError;
+        if (this.priorities != null) {
+            final double priority = Math.pow(Math.abs(tdError) + ReplayBuffer.PRIORITY_EPSILON, this.priorityAlpha);
+            this.priorities.set(slot, priority);
+            this.maxPriority = Math.max(this.maxPriority, priority);
+        }
+    }
+}
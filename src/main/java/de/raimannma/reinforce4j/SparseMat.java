@@ -0,0 +1,78 @@
+package de.raimannma.reinforce4j;
+
+class SparseMat {
+    final int n;
+    final int d;
+    final int capacity;
+    final int[] nnz;
+    final int[] indices;
+    final double[] values;
+    final int[] features;
+    private final boolean[] marked;
+
+    SparseMat(final int n, final int d, final int capacity) {
+        this.n = n;
+        this.d = d;
+        this.capacity = capacity;
+        this.nnz = new int[d];
+        this.indices = new int[d * capacity];
+        this.values = new double[d * capacity];
+        this.features = new int[d * capacity];
+        this.marked = new boolean[n];
+    }
+
+    void setColumn(final int col, final int[] srcIndices, final double[] srcValues, final int srcOffset, final int count) {
+        if (count > this.capacity) {
+            throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.capacity);
+        }
+        System.arraycopy(srcIndices, srcOffset, this.indices, col * this.capacity, count);
+        System.arraycopy(srcValues, srcOffset, this.values, col * this.capacity, count);
+        this.nnz[col] = count;
+    }
+
+    void setColumn(final int col, final SparseVector vector) {
+        this.setColumn(col, vector.indices, vector.values, 0, vector.size);
+    }
+
+    void setColumn(final int col, final double[] dense) {
+        final int offset = col * this.capacity;
+        int count = 0;
+        for (int i = 0; i < this.n; i++) {
+            if (dense[i] != 0) {
+                if (count == this.capacity) {
+                    throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.capacity);
+                }
+                this.indices[offset + count] = i;
+                this.values[offset + count] = dense[i];
+                count++;
+            }
+        }
+        this.nnz[col] = count;
+    }
+
+    int collectFeatures() {
+        int count = 0;
+        for (int j = 0; j < this.d; j++) {
+            final int offset = j * this.capacity;
+            for (int k = offset; k < offset + this.nnz[j]; k++) {
+                final int feature = this.indices[k];
+                if (!this.marked[feature]) {
+                    this.marked[feature] = true;
+                    this.features[count++] = feature;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            this.marked[this.features[i]] = false;
+        }
+        return count;
+    }
+
+    int totalNonZeros() {
+        int total = 0;
+        for (int j = 0; j < this.d; j++) {
+            total += this.nnz[j];
+        }
+        return total;
+    }
+}
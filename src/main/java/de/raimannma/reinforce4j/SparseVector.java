@@ -0,0 +1,65 @@
+package de.raimannma.reinforce4j;
+
+import java.util.Arrays;
+
+public class SparseVector {
+    final int[] indices;
+    final double[] values;
+    int size;
+
+    public SparseVector(final int capacity) {
+        this.indices = new int[capacity];
+        this.values = new double[capacity];
+        this.size = 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public void add(final int index, final double value) {
+        if (this.size == this.indices.length) {
+            throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.indices.length);
+        }
+        this.indices[this.size] = index;
+        this.values[this.size] = value;
+        this.size++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getIndex(final int i) {
+        return this.indices[i];
+    }
+
+    public double getValue(final int i) {
+        return this.values[i];
+    }
+
+    void set(final double[] dense) {
+        this.size = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] != 0) {
+                this.add(i, dense[i]);
+            }
+        }
+    }
+
+    void set(final SparseVector vector) {
+        if (vector.size > this.indices.length) {
+            throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.indices.length);
+        }
+        System.arraycopy(vector.indices, 0, this.indices, 0, vector.size);
+        System.arraycopy(vector.values, 0, this.values, 0, vector.size);
+        this.size = vector.size;
+    }
+
+    void toDense(final double[] dense) {
+        Arrays.fill(dense, 0);
+        for (int i = 0; i < this.size; i++) {
+            dense[this.indices[i]] = this.values[i];
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package de.raimannma.reinforce4j;
+
+public enum Stage {
+    ACT, LEARN, SAMPLE, FORWARD, BACKWARD, UPDATE
+}
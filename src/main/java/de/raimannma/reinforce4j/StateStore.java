@@ -0,0 +1,131 @@
+package de.raimannma.reinforce4j;
+
+class StateStore {
+    private final int numStates;
+    private final int sparseCapacity;
+    private final double[] states;
+    private final float[] floatStates;
+    private final int[] nnz;
+    private final int[] indices;
+    private final double[] values;
+
+    StateStore(final int capacity, final int numStates, final boolean floatPrecision, final int sparseCapacity) {
+        this.numStates = numStates;
+        this.sparseCapacity = sparseCapacity;
+        if (sparseCapacity > 0) {
+            this.states = null;
+            this.floatStates = null;
+            this.nnz = new int[capacity];
+            this.indices = new int[capacity * sparseCapacity];
+            this.values = new double[capacity * sparseCapacity];
+        } else {
+            this.states = floatPrecision ? null : new double[capacity * numStates];
+            this.floatStates = floatPrecision ? new float[capacity * numStates] : null;
+            this.nnz = null;
+            this.indices = null;
+            this.values = null;
+        }
+    }
+
+    void set(final int slot, final double[] src) {
+        if (this.nnz != null) {
+            final int offset = slot * this.sparseCapacity;
+            int count = 0;
+            for (int i = 0; i < this.numStates; i++) {
+                if (src[i] != 0) {
+                    if (count == this.sparseCapacity) {
+                        throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.sparseCapacity);
+                    }
+                    this.indices[offset + count] = i;
+                    this.values[offset + count] = src[i];
+                    count++;
+                }
+            }
+            this.nnz[slot] = count;
+        } else if (this.states != null) {
+            System.arraycopy(src, 0, this.states, slot * this.numStates, this.numStates);
+        } else {
+            final int offset = slot * this.numStates;
+            for (int i = 0; i < this.numStates; i++) {
+                this.floatStates[offset + i] = (float) src[i];
+            }
+        }
+    }
+
+    void set(final int slot, final SparseVector src) {
+        if (this.nnz != null) {
+            this.set(slot, src.indices, src.values, 0, src.size);
+            return;
+        }
+        final int offset = slot * this.numStates;
+        for (int i = 0; i < this.numStates; i++) {
+            this.setDense(offset + i, 0);
+        }
+        for (int k = 0; k < src.size; k++) {
+            this.setDense(offset + src.indices[k], src.values[k]);
+        }
+    }
+
+    void set(final int slot, final StateStore src, final int srcSlot) {
+        if (this.nnz != null && src.nnz != null) {
+            this.set(slot, src.indices, src.values, srcSlot * src.sparseCapacity, src.nnz[srcSlot]);
+            return;
+        }
+        if (this.nnz != null) {
+            throw new IllegalArgumentException("Cannot copy a dense state into a sparse store");
+        }
+        final int offset = slot * this.numStates;
+        if (src.nnz != null) {
+            for (int i = 0; i < this.numStates; i++) {
+                this.setDense(offset + i, 0);
+            }
+            final int srcOffset = srcSlot * src.sparseCapacity;
+            for (int k = 0; k < src.nnz[srcSlot]; k++) {
+                this.setDense(offset + src.indices[srcOffset + k], src.values[srcOffset + k]);
+            }
+            return;
+        }
+        final int srcOffset = srcSlot * src.numStates;
+        for (int i = 0; i < this.numStates; i++) {
+            this.setDense(offset + i, src.states != null ? src.states[srcOffset + i] : src.floatStates[srcOffset + i]);
+        }
+    }
+
+    private void set(final int slot, final int[] srcIndices, final double[] srcValues, final int srcOffset, final int count) {
+        if (count > this.sparseCapacity) {
+            throw new ArrayIndexOutOfBoundsException("Num_NonZeros > " + this.sparseCapacity);
+        }
+        System.arraycopy(srcIndices, srcOffset, this.indices, slot * this.sparseCapacity, count);
+        System.arraycopy(srcValues, srcOffset, this.values, slot * this.sparseCapacity, count);
+        this.nnz[slot] = count;
+    }
+
+    private void setDense(final int i, final double value) {
+        if (this.states != null) {
+            this.states[i] = value;
+        } else {
+            this.floatStates[i] = (float) value;
+        }
+    }
+
+    void copy(final int slot, final Workspace dst, final int col) {
+        if (this.nnz != null && dst.sparseInput != null) {
+            dst.sparseInput.setColumn(col, this.indices, this.values, slot * this.sparseCapacity, this.nnz[slot]);
+        } else if (this.nnz != null) {
+            final Mat input = dst.input;
+            for (int i = 0; i < input.n; i++) {
+                input.set(i * input.d + col, 0);
+            }
+            final int offset = slot * this.sparseCapacity;
+            for (int k = 0; k < this.nnz[slot]; k++) {
+                input.set(this.indices[offset + k] * input.d + col, this.values[offset + k]);
+            }
+        } else if (dst.sparseInput != null) {
+            throw new IllegalArgumentException("Cannot copy a dense state into a sparse workspace");
+        } else if (this.states != null) {
+            dst.input.setColumn(col, this.states, slot * this.numStates);
+        } else {
+            dst.input.setColumn(col, this.floatStates, slot * this.numStates);
+        }
+    }
+}
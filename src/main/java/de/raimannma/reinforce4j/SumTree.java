@@ -0,0 +1,59 @@
+package de.raimannma.reinforce4j;
+
+import java.util.Arrays;
+
+class SumTree {
+    private final int leaves;
+    private final double[] sums;
+    private final double[] mins;
+
+    SumTree(final int capacity) {
+        int leaves = 1;
+        while (leaves < capacity) {
+            leaves <<= 1;
+        }
+        this.leaves = leaves;
+        this.sums = new double[2 * leaves];
+        this.mins = new double[2 * leaves];
+        Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+    }
+
+    void set(final int index, final double value) {
+        int node = index + this.leaves;
+        this.sums[node] = value;
+        this.mins[node] = value;
+        node >>= 1;
+        while (node >= 1) {
+            final int left = node << 1;
+            this.sums[node] = this.sums[left] + this.sums[left + 1];
+            this.mins[node] = Math.min(this.mins[left], this.mins[left + 1]);
+            node >>= 1;
+        }
+    }
+
+    double get(final int index) {
+        return this.sums[index + this.leaves];
+    }
+
+    double total() {
+        return this.sums[1];
+    }
+
+    double min() {
+        return this.mins[1];
+    }
+
+    int find(double prefix) {
+        int node = 1;
+        while (node < this.leaves) {
+            final int left = node << 1;
+            if (prefix < this.sums[left]) {
+                node = left;
+            } else {
+                prefix -= this.sums[left];
+                node = left + 1;
+            }
+        }
+        return node - this.leaves;
+    }
+}
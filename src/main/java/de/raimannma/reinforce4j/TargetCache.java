@@ -0,0 +1,34 @@
+package de.raimannma.reinforce4j;
+
+class TargetCache {
+    private final double[] values;
+    private final int[] generations;
+    private int generation;
+
+    TargetCache(final int capacity) {
+        this.values = new double[capacity];
+        this.generations = new int[capacity];
+        this.generation = 1;
+    }
+
+    boolean contains(final int slot) {
+        return this.generations[slot] == this.generation;
+    }
+
+    double get(final int slot) {
+        return this.values[slot];
+    }
+
+    void put(final int slot, final double value) {
+        this.values[slot] = value;
+        this.generations[slot] = this.generation;
+    }
+
+    void invalidate(final int slot) {
+        this.generations[slot] = 0;
+    }
+
+    void clear() {
+        this.generation++;
+    }
+}
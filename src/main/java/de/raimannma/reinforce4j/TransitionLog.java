@@ -0,0 +1,186 @@
+package de.raimannma.reinforce4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+final class TransitionLog implements Closeable {
+    private static final int MAGIC = 0x4C543452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_OFFSET = 16;
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    final int numStates;
+    private final boolean floatPrecision;
+    private final boolean writable;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int recordSize;
+    private final int recordsPerRegion;
+    private final List<MappedByteBuffer> regions;
+    private long size;
+
+    private TransitionLog(final FileChannel channel, final boolean writable, final int numStates, final boolean floatPrecision) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        this.header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, TransitionLog.HEADER_SIZE);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+        if (writable && channel.size() == TransitionLog.HEADER_SIZE && this.header.getInt(0) == 0) {
+            this.header.putInt(0, TransitionLog.MAGIC).putInt(4, TransitionLog.VERSION).putInt(8, numStates).putInt(12, floatPrecision ? 1 : 0);
+            this.header.putLong(TransitionLog.COUNT_OFFSET, 0);
+        }
+        if (this.header.getInt(0) != TransitionLog.MAGIC) {
+            throw new IOException("Not a reinforce4j transition log");
+        }
+        final int version = this.header.getInt(4);
+        if (version != TransitionLog.VERSION) {
+            throw new IOException("Unsupported transition log version " + version);
+        }
+        this.numStates = this.header.getInt(8);
+        this.floatPrecision = this.header.getInt(12) == 1;
+        if (writable && this.numStates != numStates) {
+            throw new IOException("Transition log has " + this.numStates + " states, agent has " + numStates);
+        }
+        this.size = this.header.getLong(TransitionLog.COUNT_OFFSET);
+        this.recordSize = 16 + 2 * this.numStates * (this.floatPrecision ? 4 : 8);
+        this.recordsPerRegion = Math.max(1, TransitionLog.REGION_SIZE / this.recordSize);
+        this.regions = new ArrayList<>();
+        if (TransitionLog.HEADER_SIZE + this.size * this.recordSize > channel.size()) {
+            throw new IOException("Transition log is truncated");
+        }
+    }
+
+    static TransitionLog append(final File file, final int numStates, final boolean floatPrecision) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new TransitionLog(channel, true, numStates, floatPrecision);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static TransitionLog open(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new TransitionLog(channel, false, 0, false);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return this.size;
+    }
+
+    void add(final double[] state, final int action, final double reward, final double[] nextState, final boolean terminal) throws IOException {
+        final long index = this.size;
+        final MappedByteBuffer region = this.region(index);
+        final int offset = this.offset(index);
+        region.putDouble(offset, reward);
+        region.putInt(offset + 8, action);
+        region.putInt(offset + 12, terminal ? 1 : 0);
+        this.put(region, offset + 16, state);
+        this.put(region, offset + 16 + this.numStates * (this.floatPrecision ? 4 : 8), nextState);
+        this.size = index + 1;
+        this.header.putLong(TransitionLog.COUNT_OFFSET, this.size);
+    }
+
+    private void put(final MappedByteBuffer region, final int offset, final double[] src) {
+        if (this.floatPrecision) {
+            for (int i = 0; i < this.numStates; i++) {
+                region.putFloat(offset + 4 * i, (float) src[i]);
+            }
+        } else {
+            for (int i = 0; i < this.numStates; i++) {
+                region.putDouble(offset + 8 * i, src[i]);
+            }
+        }
+    }
+
+    double getReward(final long index) throws IOException {
+        return this.region(index).getDouble(this.offset(index));
+    }
+
+    int getAction(final long index) throws IOException {
+        return this.region(index).getInt(this.offset(index) + 8);
+    }
+
+    boolean isTerminal(final long index) throws IOException {
+        return this.region(index).getInt(this.offset(index) + 12) != 0;
+    }
+
+    void copyStates(final long index, final double[] state, final double[] nextState) throws IOException {
+        final MappedByteBuffer region = this.region(index);
+        final int offset = this.offset(index) + 16;
+        this.copy(region, offset, state);
+        this.copy(region, offset + this.numStates * (this.floatPrecision ? 4 : 8), nextState);
+    }
+
+    private void copy(final MappedByteBuffer region, final int offset, final double[] dst) {
+        if (this.floatPrecision) {
+            for (int i = 0; i < this.numStates; i++) {
+                dst[i] = region.getFloat(offset + 4 * i);
+            }
+        } else {
+            for (int i = 0; i < this.numStates; i++) {
+                dst[i] = region.getDouble(offset + 8 * i);
+            }
+        }
+    }
+
+    private int offset(final long index) {
+        return (int) (index % this.recordsPerRegion) * this.recordSize;
+    }
+
+    private MappedByteBuffer region(final long index) throws IOException {
+        if (index < 0 || index > this.size || (index == this.size && !this.writable)) {
+            throw new IndexOutOfBoundsException("Transition " + index + " of " + this.size);
+        }
+        final int r = (int) (index / this.recordsPerRegion);
+        while (this.regions.size() <= r) {
+            this.regions.add(null);
+        }
+        MappedByteBuffer region = this.regions.get(r);
+        final long start = TransitionLog.HEADER_SIZE + (long) r * this.recordsPerRegion * this.recordSize;
+        final long length = (long) this.recordsPerRegion * this.recordSize;
+        if (region == null || (!this.writable && region.capacity() < this.offset(index) + this.recordSize)) {
+            region = this.writable ?
+                    this.channel.map(FileChannel.MapMode.READ_WRITE, start, length) :
+                    this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, this.channel.size() - start));
+            region.order(ByteOrder.LITTLE_ENDIAN);
+            this.regions.set(r, region);
+        }
+        return region;
+    }
+
+    void flush() {
+        if (!this.writable) {
+            return;
+        }
+        for (final MappedByteBuffer region : this.regions) {
+            if (region != null) {
+                region.force();
+            }
+        }
+        this.header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.writable) {
+            this.flush();
+            this.channel.truncate(TransitionLog.HEADER_SIZE + this.size * this.recordSize);
+        }
+        this.regions.clear();
+        this.channel.close();
+    }
+}
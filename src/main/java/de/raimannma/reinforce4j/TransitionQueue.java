@@ -0,0 +1,53 @@
+package de.raimannma.reinforce4j;
+
+import java.util.concurrent.Semaphore;
+
+class TransitionQueue {
+    private final ReplayBuffer slots;
+    private final Semaphore free;
+    private final Semaphore available;
+    private int head;
+
+    TransitionQueue(final int capacity, final int numStates, final int sparseCapacity) {
+        this.slots = new ReplayBuffer(capacity, numStates, false, sparseCapacity);
+        this.free = new Semaphore(capacity);
+        this.available = new Semaphore(0);
+        this.head = 0;
+    }
+
+    boolean offer(final double[] state, final int action, final double reward, final double[] nextState, final boolean terminal) {
+        if (!this.free.tryAcquire()) {
+            return false;
+        }
+        this.slots.add(state, action, reward, nextState, terminal);
+        this.available.release();
+        return true;
+    }
+
+    boolean offer(final SparseVector state, final int action, final double reward, final SparseVector nextState, final boolean terminal) {
+        if (!this.free.tryAcquire()) {
+            return false;
+        }
+        this.slots.add(state, action, reward, nextState, terminal);
+        this.available.release();
+        return true;
+    }
+
+    int take() throws InterruptedException {
+        this.available.acquire();
+        final int slot = this.head;
+        this.head++;
+        if (this.head == this.slots.capacity) {
+            this.head = 0;
+        }
+        return slot;
+    }
+
+    void release() {
+        this.free.release();
+    }
+
+    Experience view() {
+        return new Experience(this.slots);
+    }
+}
@@ -0,0 +1,54 @@
+package de.raimannma.reinforce4j;
+
+class Workspace {
+    final Graph graph;
+    final Mat input;
+    final SparseMat sparseInput;
+    final Mat[] products;
+    final Mat[] sums;
+    final Mat[] activations;
+    final Mat q;
+
+    Workspace(final int[] sizes, final int cols, final boolean floatPrecision, final Parallel parallel) {
+        this(sizes, cols, floatPrecision, 0, parallel);
+    }
+
+    Workspace(final int[] sizes, final int cols, final boolean floatPrecision, final int sparseCapacity, final Parallel parallel) {
+        this.graph = new Graph(false, parallel);
+        this.input = sparseCapacity > 0 ? null : new Mat(sizes[0], cols, floatPrecision);
+        this.sparseInput = sparseCapacity > 0 ? new SparseMat(sizes[0], cols, sparseCapacity) : null;
+        final int numLayers = sizes.length - 1;
+        this.products = new Mat[numLayers];
+        this.sums = new Mat[numLayers];
+        this.activations = new Mat[numLayers - 1];
+        for (int l = 0; l < numLayers; l++) {
+            this.products[l] = new Mat(sizes[l + 1], cols, floatPrecision);
+            this.sums[l] = new Mat(sizes[l + 1], cols, floatPrecision);
+            if (l < numLayers - 1) {
+                this.activations[l] = new Mat(sizes[l + 1], cols, floatPrecision);
+            }
+        }
+        this.q = this.sums[numLayers - 1];
+    }
+
+    void setColumn(final int col, final double[] state) {
+        if (this.sparseInput != null) {
+            this.sparseInput.setColumn(col, state);
+        } else {
+            this.input.setColumn(col, state, 0);
+        }
+    }
+
+    void setColumn(final int col, final SparseVector state) {
+        if (this.sparseInput != null) {
+            this.sparseInput.setColumn(col, state);
+            return;
+        }
+        for (int i = 0; i < this.input.n; i++) {
+            this.input.set(i * this.input.d + col, 0);
+        }
+        for (int k = 0; k < state.size; k++) {
+            this.input.set(state.indices[k] * this.input.d + col, state.values[k]);
+        }
+    }
+}
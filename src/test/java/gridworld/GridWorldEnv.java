@@ -0,0 +1,134 @@
+package gridworld;
+
+import de.raimannma.reinforce4j.Environment;
+
+import java.awt.*;
+import java.util.Random;
+
+public class GridWorldEnv implements Environment {
+    public static final int NUM_STATES = 27;
+    public static final int NUM_ACTIONS = 5;
+    private final Random rand;
+    private final Tile[][] grid = new Tile[5][5];
+
+    public GridWorldEnv() {
+        this(new Random());
+    }
+
+    public GridWorldEnv(final Random rand) {
+        this.rand = rand;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < this.grid.length; i++) {
+            for (int j = 0; j < this.grid[0].length; j++) {
+                this.grid[i][j] = new Tile(i, j);
+            }
+        }
+        final int x = this.rand.nextInt(this.grid.length);
+        final int y = this.rand.nextInt(this.grid[0].length);
+        this.grid[x][y].setAgent();
+    }
+
+    @Override
+    public void getState(final double[] state) {
+        for (int i = 0; i < this.grid.length; i++) {
+            for (int j = 0; j < this.grid[0].length; j++) {
+                state[i * this.grid[0].length + j] = this.grid[i][j].isEmpty() ? 0 : this.grid[i][j].toINT();
+            }
+        }
+        final Point agentPos = this.getAgentPos();
+        state[state.length - 2] = agentPos.x;
+        state[state.length - 1] = agentPos.y;
+    }
+
+    @Override
+    public double step(final int action) {
+        this.doAction(action);
+        final double reward = this.getReward();
+
+        for (final Tile[] tiles : this.grid) {
+            for (final Tile tile : tiles) {
+                tile.tick();
+            }
+        }
+        if (this.rand.nextDouble() < 0.1) {
+            this.randomSpawnRed();
+            this.randomSpawnGreen();
+        }
+        return reward;
+    }
+
+    @Override
+    public boolean isDone() {
+        return false;
+    }
+
+    Tile[][] getGrid() {
+        return this.grid;
+    }
+
+    private void doAction(final int action) {
+        final Point agentPos = this.getAgentPos();
+        if (action == 0) {
+            if (agentPos.y - 1 >= 0) {
+                this.grid[agentPos.x][agentPos.y].removeAgent();
+                this.grid[agentPos.x][agentPos.y - 1].setAgent();
+            }
+        } else if (action == 1) {
+            if (agentPos.y + 1 < this.grid[0].length) {
+                this.grid[agentPos.x][agentPos.y].removeAgent();
+                this.grid[agentPos.x][agentPos.y + 1].setAgent();
+            }
+        } else if (action == 2) {
+            if (agentPos.x + 1 < this.grid.length) {
+                this.grid[agentPos.x][agentPos.y].removeAgent();
+                this.grid[agentPos.x + 1][agentPos.y].setAgent();
+            }
+        } else if (action == 3 && agentPos.x - 1 >= 0) {
+            this.grid[agentPos.x][agentPos.y].removeAgent();
+            this.grid[agentPos.x - 1][agentPos.y].setAgent();
+        }
+    }
+
+    private double getReward() {
+        for (final Tile[] tiles : this.grid) {
+            for (int j = 0; j < this.grid[0].length; j++) {
+                if (tiles[j].hasAgent()) {
+                    return tiles[j].getReward();
+                }
+            }
+        }
+        return -0.05;
+    }
+
+    private void randomSpawnRed() {
+        int x, y;
+        do {
+            x = this.rand.nextInt(this.grid.length);
+            y = this.rand.nextInt(this.grid[0].length);
+        } while (!this.grid[x][y].isEmpty() || this.grid[x][y].isGreen);
+        this.grid[x][y].setRed();
+    }
+
+    private void randomSpawnGreen() {
+        int x, y;
+        do {
+            x = this.rand.nextInt(this.grid.length);
+            y = this.rand.nextInt(this.grid[0].length);
+        } while (!this.grid[x][y].isEmpty() || this.grid[x][y].isRed);
+        this.grid[x][y].setGreen();
+    }
+
+    private Point getAgentPos() {
+        for (int i = 0; i < this.grid.length; i++) {
+            for (int j = 0; j < this.grid[0].length; j++) {
+                if (this.grid[i][j].hasAgent()) {
+                    return new Point(i, j);
+                }
+            }
+        }
+        return new Point(0, 0);
+    }
+}
@@ -0,0 +1,41 @@
+package gridworld;
+
+import de.raimannma.reinforce4j.Environment;
+import de.raimannma.reinforce4j.EnvironmentRunner;
+import de.raimannma.reinforce4j.MultiAgents;
+import de.raimannma.reinforce4j.Option;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public enum HeadlessMain {
+    ;
+
+    private static final int NUM_AGENTS = 8;
+    private static final long STEPS = 20_000;
+    private static final long REPORT_EVERY = 2_000;
+
+    public static void main(final String[] args) {
+        final Map<Option, Double> config = new HashMap<>();
+        config.put(Option.EXPERIENCE_SIZE, 100e2);
+        config.put(Option.EXPERIENCE_ADD_EVERY, 100.0);
+        config.put(Option.LEARNING_STEPS_PER_ITERATION, 50.0);
+        config.put(Option.NUM_HIDDEN_UNITS, 100.0);
+        config.put(Option.BATCH_SIZE, 50.0);
+
+        final MultiAgents agents = new MultiAgents(HeadlessMain.NUM_AGENTS, GridWorldEnv.NUM_ACTIONS, GridWorldEnv.NUM_STATES, config);
+        agents.loadAgents();
+
+        final Environment[] envs = new Environment[HeadlessMain.NUM_AGENTS];
+        Arrays.setAll(envs, i -> new GridWorldEnv());
+        final EnvironmentRunner runner = new EnvironmentRunner(agents, GridWorldEnv.NUM_STATES, envs);
+
+        for (long step = 0; step < HeadlessMain.STEPS; step += HeadlessMain.REPORT_EVERY) {
+            final double stepsPerSecond = runner.run(HeadlessMain.REPORT_EVERY);
+            System.out.println("Steps: " + runner.getTotalSteps() + " (" + Math.round(stepsPerSecond) + " steps/s)");
+        }
+        agents.saveAgents();
+        agents.shutdown();
+    }
+}
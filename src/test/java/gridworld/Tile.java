@@ -1,11 +1,15 @@
 package gridworld;
 
 public class Tile {
+    private static final int GREEN_STEPS = 300;
+    private static final int RED_STEPS = 600;
     private final int x;
     private final int y;
     boolean isGreen;
     boolean isRed;
     private boolean agent;
+    private int greenSteps;
+    private int redSteps;
 
     public Tile(final int x, final int y) {
         this.x = x;
@@ -24,14 +28,7 @@ public class Tile {
 
     public void setGreen() {
         this.isGreen = true;
-        new Thread(() -> {
-            try {
-                Thread.sleep(5000);
-            } catch (final InterruptedException e) {
-                e.printStackTrace();
-            }
-            Tile.this.isGreen = false;
-        }).start();
+        this.greenSteps = Tile.GREEN_STEPS;
     }
 
     public double toINT() {
@@ -62,14 +59,16 @@ public class Tile {
 
     public void setRed() {
         this.isRed = true;
-        new Thread(() -> {
-            try {
-                Thread.sleep(10000);
-            } catch (final InterruptedException e) {
-                e.printStackTrace();
-            }
-            Tile.this.isRed = false;
-        }).start();
+        this.redSteps = Tile.RED_STEPS;
+    }
+
+    public void tick() {
+        if (this.isGreen && --this.greenSteps <= 0) {
+            this.isGreen = false;
+        }
+        if (this.isRed && --this.redSteps <= 0) {
+            this.isRed = false;
+        }
     }
 
     public void setAgent() {